@@ -0,0 +1,39 @@
+package org.docero.dgen.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of generated getters and setters
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"})
+public class AccessorBenchmark {
+    private final QuoteBean quote = Benchmarks.quote();
+    private long stamp;
+
+    @Benchmark
+    public double getters() {
+        return quote.getLevel() + quote.getSize() + quote.getStamp() + quote.getSequence() + quote.getPrice() +
+                quote.getSymbol().length() + quote.getVenues().size();
+    }
+
+    @Benchmark
+    public QuoteBean primitiveSetters() {
+        quote.setStamp(++stamp);
+        quote.setPrice(stamp);
+        return quote;
+    }
+
+    @Benchmark
+    public QuoteBean wrapperSetters() {
+        quote.setSequence(++stamp);
+        quote.setSize((int) stamp);
+        return quote;
+    }
+}
@@ -0,0 +1,25 @@
+package org.docero.dgen.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs benchmarks with allocation profiler and writes results to jmh-result.json.
+ * <p>First argument, if present, is a regexp of benchmarks to run.
+ * Fork, heap and GC settings are fixed by annotations of benchmarks, so results are comparable between runs.</p>
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark")
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json")
+                .build();
+        new Runner(options).run();
+    }
+}
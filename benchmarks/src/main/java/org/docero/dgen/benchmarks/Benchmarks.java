@@ -0,0 +1,28 @@
+package org.docero.dgen.benchmarks;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test data of benchmarks.
+ * <p>All benchmarks use the same settings: average time in nanoseconds,
+ * 5 warmup and 5 measurement iterations of 1 second, 2 forks with fixed 1g heap and parallel GC.</p>
+ */
+final class Benchmarks {
+    static final List<String> TAGS = Arrays.asList("fast", "limit", "day");
+
+    private Benchmarks() {
+    }
+
+    static QuoteBean quote() {
+        QuoteBean quote = new QuoteBean();
+        quote.setLevel(2);
+        quote.setSize(1500);
+        quote.setStamp(1513900800000L);
+        quote.setSequence(987654321L);
+        quote.setPrice(64.125);
+        quote.setSymbol("DOCR");
+        quote.setVenues(Arrays.asList("MOEX", "LSE"));
+        return quote;
+    }
+}
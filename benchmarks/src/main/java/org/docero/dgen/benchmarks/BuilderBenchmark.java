@@ -0,0 +1,36 @@
+package org.docero.dgen.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction of bean with unmodifiable properties through AbstractBuilder and constructor
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"})
+public class BuilderBenchmark {
+    private final OrderBuilder builder = new OrderBuilder();
+    private long id;
+
+    @Benchmark
+    public OrderBean newBuilder() {
+        return new OrderBuilder().quantity(10).id(++id).tags(Benchmarks.TAGS).build();
+    }
+
+    @Benchmark
+    public OrderBean reusedBuilder() {
+        return builder.quantity(10).id(++id).tags(Benchmarks.TAGS).build();
+    }
+
+    @Benchmark
+    public OrderBean constructor() {
+        OrderBean order = new OrderBean(++id, Benchmarks.TAGS);
+        order.setQuantity(10);
+        return order;
+    }
+}
@@ -0,0 +1,34 @@
+package org.docero.dgen.benchmarks;
+
+import org.docero.dgen.*;
+
+import java.io.Serializable;
+import java.util.List;
+
+@SuppressWarnings("unused")
+abstract class DGen {
+    @DGenBean
+    abstract class OrderBean implements Serializable {
+        @DGenUnmodifiable
+        long id;
+        @DGenFromBuilder
+        Integer quantity;
+        @DGenUnmodifiable(unmodifiableCollection = true)
+        List<String> tags;
+        long created;
+        String symbol;
+    }
+
+    @DGenBean
+    @DGenBinary
+    @DGenJson
+    abstract class QuoteBean implements Serializable {
+        int level;
+        Integer size;
+        long stamp;
+        Long sequence;
+        double price;
+        String symbol;
+        List<String> venues;
+    }
+}
@@ -0,0 +1,15 @@
+package org.docero.dgen.benchmarks;
+
+public class OrderBuilder extends OrderBean.AbstractBuilder {
+    private Integer quantity;
+
+    @Override
+    Integer getQuantity() {
+        return quantity;
+    }
+
+    public OrderBuilder quantity(Integer quantity) {
+        this.quantity = quantity;
+        return this;
+    }
+}
@@ -0,0 +1,88 @@
+package org.docero.dgen.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Java serialization and Jackson compared with generated binary and JSON codecs
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"})
+public class SerializationBenchmark {
+    private final QuoteBean quote = Benchmarks.quote();
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ByteBuffer buffer = ByteBuffer.allocate(1024);
+    private final StringBuilder json = new StringBuilder(256);
+    private byte[] javaBytes;
+    private byte[] jacksonBytes;
+    private ByteBuffer binary;
+    private String jsonString;
+
+    @Setup
+    public void setup() throws IOException {
+        javaBytes = javaWrite();
+        jacksonBytes = jacksonWrite();
+        binary = ByteBuffer.allocate(quote.binarySize());
+        quote.writeTo(binary);
+        binary.flip();
+        jsonString = QuoteBeanJson.toJson(quote);
+    }
+
+    @Benchmark
+    public byte[] javaWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(quote);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaRead() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(javaBytes))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public byte[] jacksonWrite() throws IOException {
+        return mapper.writeValueAsBytes(quote);
+    }
+
+    @Benchmark
+    public QuoteBean jacksonRead() throws IOException {
+        return mapper.readValue(jacksonBytes, QuoteBean.class);
+    }
+
+    @Benchmark
+    public int binaryWrite() {
+        buffer.clear();
+        quote.writeTo(buffer);
+        return buffer.position();
+    }
+
+    @Benchmark
+    public QuoteBean binaryRead() {
+        return QuoteBean.readFrom(binary.duplicate());
+    }
+
+    @Benchmark
+    public int jsonWrite() throws IOException {
+        json.setLength(0);
+        QuoteBeanJson.write(quote, json);
+        return json.length();
+    }
+
+    @Benchmark
+    public QuoteBean jsonRead() {
+        return QuoteBeanJson.fromJson(jsonString);
+    }
+}
@@ -0,0 +1,43 @@
+package org.docero.dgen.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of Collections.unmodifiableList wrapping for unmodifiableCollection properties
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:+UseParallelGC"})
+public class UnmodifiableCollectionBenchmark {
+    private final OrderBean order = new OrderBean(1L, Benchmarks.TAGS);
+    private long id;
+
+    @Benchmark
+    public OrderBean construct() {
+        return new OrderBean(++id, Benchmarks.TAGS);
+    }
+
+    @Benchmark
+    public OrderBean copyWrapped() {
+        return new OrderBean(++id, order.getTags());
+    }
+
+    @Benchmark
+    public int iterateWrapped() {
+        int length = 0;
+        for (String tag : order.getTags()) length += tag.length();
+        return length;
+    }
+
+    @Benchmark
+    public int iterateRaw() {
+        int length = 0;
+        for (String tag : Benchmarks.TAGS) length += tag.length();
+        return length;
+    }
+}
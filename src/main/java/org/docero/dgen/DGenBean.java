@@ -9,4 +9,6 @@ import java.lang.annotation.Target;
 @Target(ElementType.TYPE)
 public @interface DGenBean {
     boolean packagePrivate() default false;
+
+    boolean reusableBuilder() default false;
 }
@@ -0,0 +1,14 @@
+package org.docero.dgen;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Retention(RetentionPolicy.SOURCE)
+@Target(ElementType.TYPE)
+public @interface DGenCsv {
+    char delimiter() default ',';
+
+    boolean header() default false;
+}
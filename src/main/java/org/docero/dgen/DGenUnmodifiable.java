@@ -9,4 +9,6 @@ import java.lang.annotation.Target;
 @Target({ElementType.TYPE, ElementType.FIELD})
 public @interface DGenUnmodifiable {
     boolean unmodifiableCollection() default false;
+
+    boolean primitiveCollection() default false;
 }
@@ -0,0 +1,91 @@
+package org.docero.dgen.processor;
+
+import java.io.IOException;
+
+/**
+ * Generator of atomic operations for bean marked with {@link org.docero.dgen.DGenConcurrent}.
+ * <p>Modifiable fields of such bean are volatile. Fields of int, long and reference types get
+ * static field updater and compareAndSet, getAndSet, updateAndGet and lazySet methods,
+ * int and long fields also get getAndAdd and addAndGet. Other primitive fields are only volatile.
+ * References are compared by identity, except wrappers of primitives compared by value.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenAtomics {
+    private DGenAtomics() {
+    }
+
+    private static String updater(DGenProperty property) {
+        return property.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toUpperCase() + "_UPDATER_";
+    }
+
+    static void printAtomics(JavaClassWriter cw, DGenClass bean) throws IOException {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        for (DGenProperty property : bean.getProperties()) {
+            if (bean.isUnmodifiable(property)) continue;
+            DGenType type = property.getGenType();
+            String name = property.getName();
+            String proper = DGenProcessor.proper(name);
+            String updater = updater(property);
+            String valueType;
+            if (type.isPrimitive() && (type.getKind() == DGenType.Kind.INT || type.getKind() == DGenType.Kind.LONG)) {
+                String atomic = type.getKind() == DGenType.Kind.INT ? "Integer" : "Long";
+                String operator = type.getKind() == DGenType.Kind.INT ? "IntUnaryOperator" : "LongUnaryOperator";
+                valueType = type.getName();
+                cw.println("");
+                cw.println("private static final java.util.concurrent.atomic.Atomic" + atomic + "FieldUpdater<" +
+                        simpleName + "> " + updater + " =");
+                cw.println("        java.util.concurrent.atomic.Atomic" + atomic + "FieldUpdater.newUpdater(" +
+                        simpleName + ".class, \"" + name + "\");");
+                cw.println(access + valueType + " getAndAdd" + proper + "(" + valueType + " delta) {return " +
+                        updater + ".getAndAdd(this, delta);}");
+                cw.println(access + valueType + " addAndGet" + proper + "(" + valueType + " delta) {return " +
+                        updater + ".addAndGet(this, delta);}");
+                cw.println(access + valueType + " updateAndGet" + proper + "(java.util.function." + operator +
+                        " update) {return " + updater + ".updateAndGet(this, update);}");
+            } else if (!type.isPrimitive()) {
+                valueType = property.getTypeName();
+                String erased = type.getErasedName();
+                boolean generic = !type.getArguments().isEmpty();
+                cw.println("");
+                if (generic) cw.println("@SuppressWarnings(\"rawtypes\")");
+                cw.println("private static final java.util.concurrent.atomic.AtomicReferenceFieldUpdater<" +
+                        simpleName + ", " + erased + "> " + updater + " =");
+                cw.println("        java.util.concurrent.atomic.AtomicReferenceFieldUpdater.newUpdater(" +
+                        simpleName + ".class, " + erased + ".class, \"" + name + "\");");
+                if (generic) cw.println("@SuppressWarnings(\"unchecked\")");
+                cw.println(access + valueType + " updateAndGet" + proper + "(java.util.function.UnaryOperator<" +
+                        valueType + "> update) {return " + (generic ?
+                        "(" + valueType + ") " + updater + ".updateAndGet(this, v -> update.apply((" + valueType + ") v));}" :
+                        updater + ".updateAndGet(this, update);}"));
+            } else
+                continue;
+            boolean cast = !type.isPrimitive() && !type.getArguments().isEmpty();
+            if (cast) cw.println("@SuppressWarnings(\"unchecked\")");
+            cw.println(access + valueType + " getAndSet" + proper + "(" + valueType + " val) {return " +
+                    (cast ? "(" + valueType + ") " : "") + updater + ".getAndSet(this, val);}");
+            if (type.isBoxed()) {
+                cw.println("");
+                cw.println("/**");
+                cw.println(" * Sets value if current one equals to expected, boxed values are compared by equals");
+                cw.println(" */");
+                cw.startBlock(access + "boolean compareAndSet" + proper + "(" + valueType + " expect, " + valueType +
+                        " update) {");
+                cw.startBlock("for (;;) {");
+                cw.println(valueType + " current_ = " + name + ";");
+                cw.println("if (!java.util.Objects.equals(current_, expect)) return false;");
+                cw.println("if (" + updater + ".compareAndSet(this, current_, update)) return true;");
+                cw.endBlock("}");
+                cw.endBlock("}");
+            } else
+                cw.println(access + "boolean compareAndSet" + proper + "(" + valueType + " expect, " + valueType +
+                        " update) {return " + updater + ".compareAndSet(this, expect, update);}");
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Ordered write, value becomes visible to other threads eventually");
+            cw.println(" */");
+            cw.println(access + "void lazySet" + proper + "(" + valueType + " val) {" + updater +
+                    ".lazySet(this, val);}");
+        }
+    }
+}
@@ -4,24 +4,48 @@ import org.docero.dgen.*;
 
 import javax.annotation.processing.ProcessingEnvironment;
 import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
 import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
-import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
 import java.util.*;
 import java.util.stream.Collectors;
 
 @SuppressWarnings({"WeakerAccess", "unused"})
 public class DGenClass {
-    final private List<? extends AnnotationMirror> annotations;
-    final private Name sourceName;
+    final private List<DGenProperty.AnnotationSnapshot> annotations;
+    final private String sourceName;
     final private String targetClassName;
     final private boolean isInterface;
     final private boolean isPackagePrivate;
+    final private boolean reusableBuilder;
     final private boolean unmodifiableType;
-    final private Map<String, DGenProperty> properties = new HashMap<>();
+    final private boolean binary;
+    final private boolean json;
+    final private boolean columnar;
+    final private boolean valueObject;
+    final private boolean interned;
+    final private boolean dirtyTracked;
+    private boolean deltaWritten;
+    final private boolean accessors;
+    final private DGenLayout layout;
+    final private boolean concurrent;
+    final private boolean mapped;
+    final private boolean jdbc;
+    final private boolean csv;
+    final private boolean indexed;
+    final private List<TypeElement> mappingTargets = new ArrayList<>();
+    final private Map<String, DGenProperty> properties = new LinkedHashMap<>();
+    final private List<DGenProperty> lazyProperties = new ArrayList<>();
     final private DGenDoc genDoc;
-    private final TypeMirror superclass;
-    private final List<? extends TypeMirror> interfaces;
+    private final TypeElement prototype;
+    private DGenStats.Record statistics;
+    private final String superclass;
+    private final List<String> interfaces;
+    private final List<DGenCompanion> companions = new ArrayList<>();
+    private final List<JavaClassWriter> sources = new ArrayList<>();
+    private final List<String> generatedClasses = new ArrayList<>();
 
     public static DGenClass readInterface(TypeElement prototype) {
         return new DGenClass(prototype, true);
@@ -32,26 +56,50 @@ public class DGenClass {
     }
 
     private DGenClass(TypeElement prototype, boolean isInterface) {
-        sourceName = prototype.getQualifiedName();
+        this.prototype = prototype;
+        sourceName = prototype.getQualifiedName().toString();
         targetClassName = prototype.getEnclosingElement()
                 .getEnclosingElement().toString() + "." +
                 prototype.getSimpleName();
-        annotations = prototype.getAnnotationMirrors().stream()
+        annotations = DGenProperty.AnnotationSnapshot.of(prototype.getAnnotationMirrors().stream()
                 .filter(a -> !a.toString().startsWith("org.docero.dgen."))
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
         unmodifiableType = prototype.getAnnotation(DGenUnmodifiable.class) != null;
+        binary = !isInterface && prototype.getAnnotation(DGenBinary.class) != null;
+        json = !isInterface && prototype.getAnnotation(DGenJson.class) != null;
+        columnar = !isInterface && prototype.getAnnotation(DGenColumnar.class) != null;
+        interned = !isInterface && prototype.getAnnotation(DGenInterned.class) != null;
+        dirtyTracked = !isInterface && prototype.getAnnotation(DGenDirty.class) != null;
+        accessors = !isInterface && prototype.getAnnotation(DGenAccessors.class) != null;
+        layout = isInterface ? null : prototype.getAnnotation(DGenLayout.class);
+        concurrent = !isInterface && prototype.getAnnotation(DGenConcurrent.class) != null;
+        mapped = !isInterface && prototype.getAnnotation(DGenMapped.class) != null;
+        jdbc = !isInterface && prototype.getAnnotation(DGenJdbc.class) != null;
+        csv = !isInterface && prototype.getAnnotation(DGenCsv.class) != null;
+        for (AnnotationMirror mirror : prototype.getAnnotationMirrors())
+            if (mirror.getAnnotationType().toString().equals(DGenMapping.class.getName()))
+                for (AnnotationValue value : mirror.getElementValues().values())
+                    for (Object target : (List<?>) value.getValue())
+                        mappingTargets.add((TypeElement) ((DeclaredType) ((AnnotationValue) target).getValue()).asElement());
+        valueObject = interned || !isInterface && prototype.getAnnotation(DGenEquals.class) != null;
         if (isInterface) {
             DGenInterface ifAn = prototype.getAnnotation(DGenInterface.class);
             this.isInterface = true;
             isPackagePrivate = ifAn.packagePrivate();
+            reusableBuilder = false;
         } else {
             DGenBean clAn = prototype.getAnnotation(DGenBean.class);
             this.isInterface = false;
             isPackagePrivate = clAn != null && clAn.packagePrivate();
+            reusableBuilder = clAn != null && clAn.reusableBuilder();
         }
-        superclass = prototype.getSuperclass();
+        superclass = prototype.getSuperclass().getKind() == TypeKind.NONE ||
+                prototype.getSuperclass().toString().equals("java.lang.Object") ? null :
+                prototype.getSuperclass().toString();
         genDoc = prototype.getAnnotation(DGenDoc.class);
-        interfaces = prototype.getInterfaces();
+        interfaces = prototype.getInterfaces().stream()
+                .map(TypeMirror::toString)
+                .collect(Collectors.toList());
 
         for (Element element : prototype.getEnclosedElements()) {
             DGenProperty p = null;
@@ -59,15 +107,18 @@ public class DGenClass {
                 p = DGenProperty.from((VariableElement) element);
             else if (element.getKind() == ElementKind.METHOD)
                 p = DGenProperty.from((ExecutableElement) element);
-            if (p != null) {
+            if (p != null && p.getLazyMethod() != null && !isInterface) {
+                lazyProperties.add(p);
+            } else if (p != null) {
                 DGenProperty p0 = properties.get(p.getName());
                 if (p0 != null) p0.join(p);
                 else properties.put(p.getName(), p);
             }
         }
+        indexed = !isInterface && properties.values().stream().anyMatch(DGenRepository::isIndexed);
     }
 
-    public List<? extends AnnotationMirror> getAnnotations() {
+    public List<DGenProperty.AnnotationSnapshot> getAnnotations() {
         return annotations;
     }
 
@@ -87,11 +138,635 @@ public class DGenClass {
         return properties.values();
     }
 
-    void generate(ProcessingEnvironment processingEnv) {
+    public TypeElement getPrototype() {
+        return prototype;
+    }
+
+    public String getSourceName() {
+        return sourceName;
+    }
+
+    public String getSimpleName() {
+        return targetClassName.substring(targetClassName.lastIndexOf('.') + 1);
+    }
+
+    public String getPackageName() {
+        return targetClassName.substring(0, targetClassName.lastIndexOf('.'));
+    }
+
+    /**
+     * @param property one of class properties
+     * @return true if property is final in bean implementation
+     */
+    public boolean isUnmodifiable(DGenProperty property) {
+        return unmodifiableType || property.isUnmodifiable();
+    }
+
+    /**
+     * @return true if every property of bean is final, so its copies may be made without synchronization
+     */
+    public boolean isImmutable() {
+        return getUnmodifiableProperties().size() == properties.size();
+    }
+
+    /**
+     * @return properties passed to bean constructor, in order of its parameters
+     */
+    public List<DGenProperty> getUnmodifiableProperties() {
+        return properties.values().stream()
+                .filter(this::isUnmodifiable)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Rank of property in memory layout: 8 byte primitives, 4 byte primitives, references,
+     * then 2 and 1 byte primitives, as JVM packs fields
+     */
+    private static int sizeClass(DGenProperty property) {
+        DGenType type = property.getGenType();
+        if (!type.isPrimitive()) return 2;
+        switch (type.getKind()) {
+            case LONG:
+            case DOUBLE:
+                return 0;
+            case INT:
+            case FLOAT:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 3;
+            default:
+                return 4;
+        }
+    }
+
+    /**
+     * @return properties in order of field declarations: hot properties of DGenLayout first,
+     * then other properties by size, or properties in order of prototype if layout is not declared
+     */
+    List<DGenProperty> getFieldLayout() {
+        List<DGenProperty> fields = new ArrayList<>(properties.values());
+        if (layout == null) return fields;
+        List<String> hot = Arrays.asList(layout.hot());
+        fields.sort(Comparator.comparingInt((DGenProperty p) -> hot.contains(p.getName()) ? -1 : sizeClass(p))
+                .thenComparingInt(p -> hot.indexOf(p.getName())));
+        return fields;
+    }
+
+    /**
+     * @return names of properties in order of field declarations
+     */
+    List<String> fieldOrder() {
+        return getFieldLayout().stream().map(DGenProperty::getName).collect(Collectors.toList());
+    }
+
+    public boolean isInterned() {
+        return interned;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
+    public boolean isDirtyTracked() {
+        return dirtyTracked;
+    }
+
+    /**
+     * @return true if bean has writeDelta and applyDelta methods, known after {@link #validate}
+     */
+    public boolean isDeltaWritten() {
+        return deltaWritten;
+    }
+
+    /**
+     * @return properties having bit in dirty mask: mutable and not transient, in order of bits
+     */
+    public List<DGenProperty> getTrackedProperties() {
+        return properties.values().stream()
+                .filter(p -> !isUnmodifiable(p) && !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Dirty mask is a long field, or BitSet for more than 64 tracked properties
+     */
+    boolean isDirtyBitSet() {
+        return getTrackedProperties().size() > 64;
+    }
+
+    /**
+     * @return statement marking property as changed, or empty string if property is not tracked
+     */
+    private String dirtyMark(DGenProperty property) {
+        if (!dirtyTracked) return "";
+        int bit = getTrackedProperties().indexOf(property);
+        if (bit < 0) return "";
+        return isDirtyBitSet() ? " dirty_.set(" + bit + ");" : " dirty_ |= 0x" + Long.toHexString(1L << bit) + "L;";
+    }
+
+    void setStatistics(DGenStats.Record statistics) {
+        this.statistics = statistics;
+    }
+
+    DGenStats.Record getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Opens writer for class generated from this prototype, rendered source is written by {@link #write}
+     *
+     * @param className qualified name of generated class
+     * @return writer of new source
+     */
+    JavaClassWriter openWriter(String className) {
+        JavaClassWriter cw = new JavaClassWriter(className);
+        cw.setStatistics(statistics);
+        sources.add(cw);
+        return cw;
+    }
+
+    /**
+     * @return qualified names of classes written from this prototype
+     */
+    List<String> getGeneratedClasses() {
+        return generatedClasses;
+    }
+
+    /**
+     * Writes rendered sources in order of their rendering, must be called on compiler thread
+     */
+    void write(ProcessingEnvironment processingEnv) {
+        for (JavaClassWriter cw : sources)
+            try {
+                cw.writeTo(processingEnv.getFiler(), prototype);
+                generatedClasses.add(cw.getClassName());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        sources.clear();
+    }
+
+    /**
+     * Prints creation of variable bean_ from local variables named as properties with 'v_' prefix.
+     * <p>Unmodifiable properties passed to constructor as AbstractBuilder does it, others set by setters.
+     * Interned bean is taken from intern table, its transient properties are not set to not change shared instance.
+     * Dirty mask of created bean is cleared, so it has no changes until it is modified.</p>
+     *
+     * @param cw     writer of generated class
+     * @param values properties having local variables, other properties got default values
+     */
+    void printConstruction(JavaClassWriter cw, Collection<DGenProperty> values) throws IOException {
+        String arguments = getUnmodifiableProperties().stream()
+                .map(p -> values.contains(p) ? "v_" + p.getName() : p.getGenType().getDefaultValue())
+                .collect(Collectors.joining(", "));
+        if (interned) {
+            cw.println(getSimpleName() + " bean_ = " + getSimpleName() + ".of(" + arguments + ");");
+            return;
+        }
+        cw.println(getSimpleName() + " bean_ = new " + getSimpleName() + "(" + arguments + ");");
+        boolean set = false;
+        for (DGenProperty property : values)
+            if (!isUnmodifiable(property)) {
+                cw.println("bean_.set" + DGenProcessor.proper(property.getName()) + "(v_" + property.getName() + ");");
+                set = true;
+            }
+        if (dirtyTracked && set) cw.println("bean_.clearDirty();");
+    }
+
+    /**
+     * @return properties compared by generated equals, transient properties are excluded
+     */
+    List<DGenProperty> getValueProperties() {
+        return properties.values().stream()
+                .filter(p -> !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Hash code of bean may be cached when all compared properties are final
+     */
+    boolean isHashCached() {
+        return getValueProperties().stream().allMatch(this::isUnmodifiable);
+    }
+
+    private static String equalsExpression(DGenProperty property) {
+        String name = property.getName();
+        if (!property.getGenType().isPrimitive())
+            return "java.util.Objects.equals(" + name + ", that_." + name + ")";
+        switch (property.getGenType().getKind()) {
+            case FLOAT:
+                return "Float.compare(" + name + ", that_." + name + ") == 0";
+            case DOUBLE:
+                return "Double.compare(" + name + ", that_." + name + ") == 0";
+            default:
+                return name + " == that_." + name;
+        }
+    }
+
+    private void printEqualsAndHashCode(JavaClassWriter cw) throws IOException {
+        List<DGenProperty> values = getValueProperties();
+        boolean hashCached = isHashCached();
+        if (hashCached) {
+            cw.println("");
+            cw.println("private transient int hash_;");
+        }
+        /*
+            equals compares primitives first, then references
+        */
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public boolean equals(Object o) {");
+        cw.println("if (this == o) return true;");
+        cw.println("if (o == null || o.getClass() != getClass()) return false;");
+        if (!values.isEmpty()) {
+            cw.println(getSimpleName() + " that_ = (" + getSimpleName() + ") o;");
+            if (hashCached)
+                cw.println("if (hash_ != 0 && that_.hash_ != 0 && hash_ != that_.hash_) return false;");
+            List<DGenProperty> ordered = new ArrayList<>(values);
+            ordered.sort(Comparator.comparing(p -> !p.getGenType().isPrimitive()));
+            for (int i = 0; i < ordered.size(); i++)
+                cw.println((i == 0 ? "return " : "        ") + equalsExpression(ordered.get(i)) +
+                        (i == ordered.size() - 1 ? ";" : " &&"));
+        } else
+            cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public int hashCode() {");
+        if (hashCached) {
+            cw.println("int h = hash_;");
+            cw.println("if (h != 0) return h;");
+            cw.println("h = 1;");
+        } else
+            cw.println("int h = 1;");
+        for (DGenProperty property : values)
+            cw.println("h = 31 * h + " + (property.getGenType().isPrimitive() ?
+                    property.getGenType().getBoxedName() + ".hashCode(" + property.getName() + ")" :
+                    "java.util.Objects.hashCode(" + property.getName() + ")") + ";");
+        if (hashCached) cw.println("hash_ = h;");
+        cw.println("return h;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public String toString() {");
+        String separator = getSimpleName() + "{";
+        if (properties.isEmpty()) {
+            cw.println("return \"" + separator + "}\";");
+        } else {
+            cw.println("return new StringBuilder(" + (16 * properties.size()) + ")");
+            for (DGenProperty property : properties.values()) {
+                cw.println("        .append(\"" + separator + property.getName() + "=\").append(" +
+                        property.getName() + ")");
+                separator = ", ";
+            }
+            cw.println("        .append('}').toString();");
+        }
+        cw.endBlock("}");
+    }
+
+    private static String wrapCollection(DGenProperty property, String value) {
+        if (property.isPrimitiveCollection())
+            return DGenPrimitiveCollections.collectionClass(property.getGenType()) + ".copyOf(" + value + ")";
+        if (!property.isUnmodifiableCollection()) return value;
+        switch (property.getGenType().getKind()) {
+            case LIST:
+                return "unmodifiableList_(" + value + ")";
+            case MAP:
+                return "unmodifiableMap_(" + value + ")";
+            default:
+                return value;
+        }
+    }
+
+    /**
+     * Wrappers used by constructor for unmodifiableCollection properties,
+     * collection already wrapped by Collections (e.g. passed from other bean) is not wrapped again.
+     */
+    private void printUnmodifiableWrappers(JavaClassWriter cw) throws IOException {
+        boolean lists = false, maps = false;
+        for (DGenProperty property : getUnmodifiableProperties())
+            if (property.isUnmodifiableCollection() && !property.isPrimitiveCollection()) {
+                lists |= property.getGenType().getKind() == DGenType.Kind.LIST;
+                maps |= property.getGenType().getKind() == DGenType.Kind.MAP;
+            }
+        if (lists) {
+            cw.println("");
+            cw.println("private static final Class<?> UNMODIFIABLE_LIST_ = " +
+                    "java.util.Collections.unmodifiableList(new java.util.LinkedList<>()).getClass();");
+            cw.println("private static final Class<?> UNMODIFIABLE_RANDOM_ACCESS_LIST_ = " +
+                    "java.util.Collections.unmodifiableList(new java.util.ArrayList<>()).getClass();");
+            cw.startBlock("private static <T> java.util.List<T> unmodifiableList_(java.util.List<T> list) {");
+            cw.println("Class<?> c = list.getClass();");
+            cw.println("return c == UNMODIFIABLE_RANDOM_ACCESS_LIST_ || c == UNMODIFIABLE_LIST_ ? list : " +
+                    "java.util.Collections.unmodifiableList(list);");
+            cw.endBlock("}");
+        }
+        if (maps) {
+            cw.println("");
+            cw.println("private static final Class<?> UNMODIFIABLE_MAP_ = " +
+                    "java.util.Collections.unmodifiableMap(new java.util.HashMap<>()).getClass();");
+            cw.startBlock("private static <K, V> java.util.Map<K, V> unmodifiableMap_(java.util.Map<K, V> map) {");
+            cw.println("return map.getClass() == UNMODIFIABLE_MAP_ ? map : java.util.Collections.unmodifiableMap(map);");
+            cw.endBlock("}");
+        }
+    }
+
+    /**
+     * Copy-on-write methods for properties of immutable bean: copy of bean with one changed value,
+     * or this bean if value is the same instance.
+     */
+    private void printWithMethods(JavaClassWriter cw) throws IOException {
+        String simpleName = getSimpleName();
+        String access = isPackagePrivate ? "" : "public ";
+        List<DGenProperty> unmodifiable = getUnmodifiableProperties();
+        for (DGenProperty property : unmodifiable) {
+            cw.println("");
+            cw.startBlock(access + simpleName + " with" + DGenProcessor.proper(property.getName()) +
+                    "(" + property.getTypeName() + " val) {");
+            cw.println("if (" + property.getName() + " == val) return this;");
+            cw.println(simpleName + " bean_ = new " + simpleName + "(" + unmodifiable.stream()
+                    .map(u -> u == property ? "val" : u.getName())
+                    .collect(Collectors.joining(", ")) + ");");
+            for (DGenProperty other : properties.values())
+                if (!isUnmodifiable(other))
+                    cw.println("bean_." + other.getName() + " = " + other.getName() + ";");
+            cw.println(interned ? "return intern(bean_);" : "return bean_;");
+            cw.endBlock("}");
+        }
+    }
+
+    /**
+     * @return properties of concrete Builder: constructor parameters, properties from AbstractBuilder
+     * and all other non-transient properties
+     */
+    List<DGenProperty> getBuilderProperties() {
+        return properties.values().stream()
+                .filter(p -> isUnmodifiable(p) || p.isBuilderProperty() || !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return properties marked as DGenRequired, in order of bits in builder mask
+     */
+    private static List<DGenProperty> getRequired(List<DGenProperty> stored) {
+        return stored.stream().filter(DGenProperty::isRequired).collect(Collectors.toList());
+    }
+
+    private static String requiredBit(int index) {
+        return "0x" + Long.toHexString(1L << index) + "L";
+    }
+
+    private static void printRequiredCheck(JavaClassWriter cw, List<DGenProperty> required) throws IOException {
+        if (required.isEmpty()) return;
+        long mask = required.size() == 64 ? -1L : (1L << required.size()) - 1;
+        cw.startBlock("if (required_ != 0x" + Long.toHexString(mask) + "L) {");
+        cw.println("StringBuilder missing_ = new StringBuilder(\"required properties are not set:\");");
+        for (int i = 0; i < required.size(); i++)
+            cw.println("if ((required_ & " + requiredBit(i) + ") == 0) missing_.append(\" " +
+                    required.get(i).getName() + "\");");
+        cw.println("throw new IllegalStateException(missing_.toString());");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Prints reset() method restoring default values, so builder may be reused for next bean
+     */
+    private static void printReset(JavaClassWriter cw, String builderName, List<DGenProperty> stored,
+                                   List<DGenProperty> required) throws IOException {
+        cw.println("");
+        cw.startBlock("public " + builderName + " reset() {");
+        for (DGenProperty property : stored)
+            cw.println("this." + property.getName() + " = " + property.getGenType().getDefaultValue() + ";");
+        if (!required.isEmpty()) cw.println("required_ = 0L;");
+        cw.println("return this;");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Concrete builder with value of every property, it is filled from existing immutable bean by toBuilder().
+     * <p>Bean with reusableBuilder option has also builder() and localBuilder(): builder of current thread
+     * is reset and reused, so only beans are allocated when many of them built in a loop.</p>
+     */
+    private void printBuilder(JavaClassWriter cw) throws IOException {
+        String simpleName = getSimpleName();
+        String access = isPackagePrivate ? "" : "public ";
+        List<DGenProperty> values = getBuilderProperties();
+        List<DGenProperty> required = getRequired(values);
+
+        if (isImmutable()) {
+            cw.println("");
+            cw.startBlock(access + "Builder toBuilder() {");
+            cw.println("Builder builder_ = new Builder();");
+            for (DGenProperty property : values)
+                cw.println("builder_." + property.getName() + " = " + property.getName() + ";");
+            if (!required.isEmpty())
+                cw.println("builder_.required_ = " + (required.size() == 64 ? "-1L" :
+                        "0x" + Long.toHexString((1L << required.size()) - 1) + "L") + ";");
+            cw.println("return builder_;");
+            cw.endBlock("}");
+        }
+
+        if (reusableBuilder) {
+            cw.println("");
+            cw.println("private static final ThreadLocal<Builder> BUILDERS_ = ThreadLocal.withInitial(Builder::new);");
+            cw.println("");
+            cw.startBlock(access + "static Builder builder() {");
+            cw.println("return new Builder();");
+            cw.endBlock("}");
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return reset builder of current thread, it must not be used after next call of this method");
+            cw.println(" * and it is referenced by thread until thread ends");
+            cw.println(" */");
+            cw.startBlock(access + "static Builder localBuilder() {");
+            cw.println("return BUILDERS_.get().reset();");
+            cw.endBlock("}");
+        }
+
+        cw.println("");
+        cw.startBlock(access + "static final class Builder {");
+        if (!required.isEmpty()) cw.println("private long required_;");
+        for (DGenProperty property : values)
+            cw.println("private " + property.getTypeName() + " " + property.getName() + ";");
+        for (DGenProperty property : values) {
+            cw.println("");
+            DGenProcessor.printDoc(cw, property.getSetterDoc());
+            cw.println("public Builder " + property.getName() + "(" + property.getTypeName() + " val) {this." +
+                    property.getName() + " = val; " +
+                    (required.contains(property) ? "required_ |= " + requiredBit(required.indexOf(property)) + "; " : "") +
+                    "return this;}");
+        }
+        if (reusableBuilder) printReset(cw, "Builder", values, required);
+        cw.println("");
+        cw.startBlock("public " + simpleName + " build() {");
+        printRequiredCheck(cw, required);
+        cw.println(simpleName + " bean_ = new " + simpleName + "(" + getUnmodifiableProperties().stream()
+                .map(u -> "this." + u.getName())
+                .collect(Collectors.joining(", ")) + ");");
+        for (DGenProperty property : values)
+            if (!isUnmodifiable(property))
+                cw.println("bean_." + property.getName() + " = this." + property.getName() + ";");
+        cw.println(interned ? "return intern(bean_);" : "return bean_;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Lazy value of immutable bean may be computed more than once by concurrent threads (single-check idiom),
+     * bean with modifiable properties uses double-checked locking and its setters reset computed values.
+     */
+    private boolean isLazySingleCheck() {
+        return isImmutable();
+    }
+
+    /**
+     * @return statement marking lazy properties as not computed, used by setters after assignment.
+     * It holds the lock of getters, so value computed from previous state is not published after reset.
+     */
+    private String lazyReset() {
+        if (isLazySingleCheck() || lazyProperties.isEmpty()) return "";
+        return " synchronized (this) {" + lazyProperties.stream()
+                .map(p -> p.getName() + "Ready_ = false;")
+                .collect(Collectors.joining(" ")) + "}";
+    }
+
+    private void printLazyProperties(JavaClassWriter cw) throws IOException {
+        for (DGenProperty property : lazyProperties) {
+            String name = property.getName();
+            String type = property.getTypeName();
+            DGenType genType = property.getGenType();
+            cw.println("");
+            if (isLazySingleCheck()) {
+                // racy single-check for primitives written atomically, other values are volatile
+                boolean racy = genType.isPrimitive() &&
+                        genType.getKind() != DGenType.Kind.LONG && genType.getKind() != DGenType.Kind.DOUBLE;
+                cw.println("private transient " + (racy ? "" : "volatile ") + type + " " + name + ";");
+                DGenProcessor.printDoc(cw, property.getGetterDoc());
+                cw.startBlock((isPackagePrivate ? "" : "public ") + type + " get" + DGenProcessor.proper(name) + "() {");
+                cw.println(type + " v = " + name + ";");
+                cw.println("if (v == " + genType.getDefaultValue() + ") " + name + " = v = " +
+                        property.getLazyMethod() + "();");
+                cw.println("return v;");
+            } else {
+                cw.println("private transient volatile boolean " + name + "Ready_;");
+                cw.println("private transient " + type + " " + name + ";");
+                DGenProcessor.printDoc(cw, property.getGetterDoc());
+                cw.startBlock((isPackagePrivate ? "" : "public ") + type + " get" + DGenProcessor.proper(name) + "() {");
+                cw.startBlock("if (!" + name + "Ready_) {");
+                cw.startBlock("synchronized (this) {");
+                cw.startBlock("if (!" + name + "Ready_) {");
+                cw.println(name + " = " + property.getLazyMethod() + "();");
+                cw.println(name + "Ready_ = true;");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                cw.println("return " + name + ";");
+            }
+            cw.endBlock("}");
+        }
+    }
+
+    /**
+     * Lazy value is computed by method inherited from superclass or default method of interface,
+     * because generated bean does not extend its prototype
+     */
+    private boolean checkLazyMethods(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : lazyProperties) {
+            boolean found = false;
+            for (Element member : processingEnv.getElementUtils().getAllMembers(prototype))
+                if (member.getKind() == ElementKind.METHOD &&
+                        member.getSimpleName().contentEquals(property.getLazyMethod()) &&
+                        member.getEnclosingElement() != prototype &&
+                        !member.getModifiers().contains(Modifier.ABSTRACT) &&
+                        !member.getModifiers().contains(Modifier.PRIVATE) &&
+                        ((ExecutableElement) member).getParameters().isEmpty() &&
+                        processingEnv.getTypeUtils().isAssignable(
+                                ((ExecutableElement) member).getReturnType(), property.getType()))
+                    found = true;
+            if (!found) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "lazy property " +
+                        property.getName() + " needs method " + property.getLazyMethod() + "() returning " +
+                        property.getTypeName() + ", implemented in superclass or as default method of interface",
+                        property.getElement());
+                valid = false;
+            }
+        }
+        return valid;
+    }
+
+    private void printField(JavaClassWriter cw, DGenProperty property) throws IOException {
+        cw.println(property.getModifiers() + " " + (isUnmodifiable(property) ? "final " : concurrent ? "volatile " : "") +
+                DGenPrimitiveCollections.fieldType(property) + " " + property.getName() + ";");
+    }
+
+    /**
+     * Checks prototype and prepares companion generators, uses compiler model and must be called on compiler thread
+     *
+     * @return false if class can not be generated, errors are reported by messager
+     */
+    boolean validate(ProcessingEnvironment processingEnv) {
+        if (interned && !isHashCached()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@DGenInterned type must have only unmodifiable or transient properties", prototype);
+            return false;
+        }
+        for (DGenProperty property : properties.values())
+            if (property.isPrimitiveCollection() && DGenPrimitiveCollections.collectionClass(property.getGenType()) == null) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "primitiveCollection is supported only for List<Integer>, List<Long>, List<Double> " +
+                                "and Map<Long, V> properties", prototype);
+                return false;
+            }
+        if (getRequired(getBuilderProperties()).size() > 64) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "no more than 64 properties may be marked with @DGenRequired", prototype);
+            return false;
+        }
+        if (!checkLazyMethods(processingEnv)) return false;
+        if (concurrent && dirtyTracked) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "@DGenConcurrent type can not be marked with @DGenDirty, dirty mask is not thread safe", prototype);
+            return false;
+        }
+        if (layout != null)
+            for (String hot : layout.hot())
+                if (!properties.containsKey(hot)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "hot field " + hot + " is not a property of " + sourceName, prototype);
+                    return false;
+                }
+        // companion with invalid prototype is skipped, bean itself is generated
+        List<DGenCompanion> candidates = new ArrayList<>();
+        deltaWritten = dirtyTracked && (binary || DGenCodec.isDeltaSupported(processingEnv, this));
+        if (binary || deltaWritten) candidates.add(new DGenCodec(this));
+        if (json) candidates.add(new DGenJsonCodec(this));
+        if (columnar) candidates.add(new DGenColumns(this));
+        if (!mappingTargets.isEmpty()) candidates.add(new DGenMapper(this, mappingTargets));
+        if (mapped) candidates.add(new DGenMappedStore(this));
+        if (jdbc) candidates.add(new DGenJdbcMapper(this));
+        if (csv) candidates.add(new DGenCsvParser(this));
+        if (properties.values().stream().anyMatch(DGenSorter::isSortKey)) candidates.add(new DGenSorter(this));
+        if (indexed) candidates.add(new DGenRepository(this));
+        if (!isInterface && properties.values().stream().anyMatch(DGenValidator::hasConstraints))
+            candidates.add(new DGenValidator(this));
+        for (DGenCompanion companion : candidates)
+            if (companion.validate(processingEnv)) companions.add(companion);
+        return true;
+    }
+
+    /**
+     * Renders validated class and its companions to memory, uses only data copied from compiler model,
+     * so classes may be rendered in parallel
+     */
+    void render() {
         int lastDot = targetClassName.lastIndexOf('.');
         String simpleName = targetClassName.substring(lastDot + 1);
         try {
-            try (JavaClassWriter cw = new JavaClassWriter(processingEnv, targetClassName)) {
+            try (JavaClassWriter cw = openWriter(targetClassName)) {
                 cw.println("package " + targetClassName.substring(0, lastDot) + ";");
                 cw.startBlock("/*");
                 cw.println("This class is generated from " + sourceName);
@@ -103,31 +778,32 @@ public class DGenClass {
                 if (!isInterface) {
                     cw.print((isPackagePrivate ? "" : "public ") + "class " + simpleName);
 
-                    if (superclass.getKind() != TypeKind.NONE &&
-                            !superclass.toString().equals("java.lang.Object"))
-                        cw.print(" extends " + superclass.toString());
+                    if (superclass != null)
+                        cw.print(" extends " + superclass);
 
                     if (!interfaces.isEmpty())
-                        cw.print(" implements " + interfaces.stream()
-                                .map(TypeMirror::toString)
-                                .collect(Collectors.joining(", ")));
+                        cw.print(" implements " + String.join(", ", interfaces));
                     cw.startBlock(" {");
                 /*
                     Print properties and its access methods
                 */
                     ArrayList<DGenProperty> unmodifiable = new ArrayList<>();
                     ArrayList<DGenProperty> builderProperties = new ArrayList<>();
+                    if (layout != null) {
+                        // fields are declared together in layout order, before access methods
+                        cw.println("");
+                        for (DGenProperty property : getFieldLayout())
+                            printField(cw, property);
+                    }
                     for (DGenProperty property : properties.values()) {
                         if (property.isBuilderProperty()) builderProperties.add(property);
                         if (unmodifiableType || property.isUnmodifiable()) unmodifiable.add(property);
                         cw.println("");
-                        cw.println(property.getModifiers() + " " +
-                                (unmodifiableType || property.isUnmodifiable() ? "final " : "") +
-                                property.getType() + " " + property.getName() + ";");
+                        if (layout == null) printField(cw, property);
                         DGenProcessor.printDoc(cw, property.getGetterDoc());
                         DGenProcessor.printAnnotations(cw, property.getGetterAnnotations());
                         cw.println((isPackagePrivate ? "" : "public ") +
-                                property.getType().toString() + " get" +
+                                DGenPrimitiveCollections.fieldType(property) + " get" +
                                 DGenProcessor.proper(property.getName()) +
                                 "() {return " + property.getName() + ";}");
                         if (!(unmodifiableType || property.isUnmodifiable())) {
@@ -136,34 +812,35 @@ public class DGenClass {
                             DGenProcessor.printAnnotations(cw, property.getSetterAnnotations());
                             cw.println((isPackagePrivate ? "" : "public ") + "void set" +
                                     DGenProcessor.proper(property.getName()) +
-                                    "(" + property.getType().toString() + " val) {this." +
-                                    property.getName() + " = val;}");
+                                    "(" + property.getTypeName() + " val) {" + DGenRepository.reindexStatement(this, property) +
+                                    "this." + property.getName() + " = val;" + dirtyMark(property) + lazyReset() + "}");
                         }
                     }
+                    printLazyProperties(cw);
+                    if (indexed) DGenRepository.printBeanFields(cw, this);
                 /*
                     Create constructor for final (unmodifiable) properties
                 */
                     if (!unmodifiable.isEmpty()) {
                         cw.println("");
-                        cw.startBlock("public " + simpleName + "(" +
+                        cw.startBlock((interned ? "private " : "public ") + simpleName + "(" +
                                 unmodifiable.stream()
-                                        .map(var -> var.getType() + " " + var.getName())
+                                        .map(var -> var.getTypeName() + " " + var.getName())
                                         .collect(Collectors.joining(", ")) +
                                 ") {");
-                        Types tu = processingEnv.getTypeUtils();
-                        for (DGenProperty var : unmodifiable) {
-                            TypeMirror te = tu.erasure(var.getType());
-                            if (var.isUnmodifiableCollection() && tu.isSameType(DGenProcessor.listType, te))
-                                cw.println("this." + var.getName() + " = java.util.Collections.unmodifiableList(" +
-                                        var.getName() + ");");
-                            else if (var.isUnmodifiableCollection() && tu.isSameType(DGenProcessor.mapType, te))
-                                cw.println("this." + var.getName() + " = java.util.Collections.unmodifiableMap(" +
-                                        var.getName() + ");");
-                            else
-                                cw.println("this." + var.getName() + " = " + var.getName() + ";");
-                        }
+                        for (DGenProperty var : unmodifiable)
+                            cw.println("this." + var.getName() + " = " + wrapCollection(var, var.getName()) + ";");
                         cw.endBlock("}");
+                        printUnmodifiableWrappers(cw);
+                        DGenPrimitiveCollections.printClasses(cw, this);
+                        if (isImmutable()) printWithMethods(cw);
                     }
+                    if (valueObject) printEqualsAndHashCode(cw);
+                    if (interned) DGenInterner.printInterning(cw, this);
+                    if (binary) DGenCodec.printBeanMethods(cw, this);
+                    if (dirtyTracked) DGenCodec.printDirtyMethods(cw, this);
+                    if (accessors) DGenPropertyTable.printAccessors(cw, this);
+                    if (concurrent) DGenAtomics.printAtomics(cw, this);
                 /*
                     Create abstract builder class for filling all unmodifiable properties,
                     and properties marked as DGenFromBuilder
@@ -174,28 +851,36 @@ public class DGenClass {
                                 "static abstract class AbstractBuilder {");
                         // abstract methods for properties marked as DGenFromBuilder
                         for (DGenProperty val : builderProperties) {
-                            cw.println("abstract " + val.getType() + " get" + DGenProcessor.proper(val.getName()) + "();");
+                            cw.println("abstract " + val.getTypeName() + " get" + DGenProcessor.proper(val.getName()) + "();");
                         }
                         // setters for unmodifiable properties
-                        for (DGenProperty u : unmodifiable)
-                            if (!builderProperties.contains(u)) {
-                                cw.println("");
-                                cw.println("private " + u.getType() + " " + u.getName() + ";");
-                                DGenProcessor.printDoc(cw, u.getSetterDoc());
-                                cw.println("public AbstractBuilder " + u.getName() + "(" +
-                                        u.getType() + " val) {this." + u.getName() + " = val; return this;}");
-                                cw.println((isPackagePrivate ? "" : "public ") +
-                                        u.getType() + " get" + DGenProcessor.proper(u.getName()) + "() {return this." +
-                                        u.getName() + ";}");
-                            }
+                        List<DGenProperty> stored = unmodifiable.stream()
+                                .filter(u -> !builderProperties.contains(u))
+                                .collect(Collectors.toList());
+                        List<DGenProperty> required = getRequired(stored);
+                        if (!required.isEmpty()) cw.println("private long required_;");
+                        for (DGenProperty u : stored) {
+                            cw.println("");
+                            cw.println("private " + u.getTypeName() + " " + u.getName() + ";");
+                            DGenProcessor.printDoc(cw, u.getSetterDoc());
+                            cw.println("public AbstractBuilder " + u.getName() + "(" +
+                                    u.getTypeName() + " val) {this." + u.getName() + " = val; " +
+                                    (required.contains(u) ? "required_ |= " + requiredBit(required.indexOf(u)) + "; " : "") +
+                                    "return this;}");
+                            cw.println((isPackagePrivate ? "" : "public ") +
+                                    u.getTypeName() + " get" + DGenProcessor.proper(u.getName()) + "() {return this." +
+                                    u.getName() + ";}");
+                        }
+                        if (reusableBuilder) printReset(cw, "AbstractBuilder", stored, required);
                         // build method
                         cw.println("");
                         cw.startBlock("public " + simpleName + " build() {");
+                        printRequiredCheck(cw, required);
                         cw.println(simpleName + " bean_ = new " + simpleName + "(" +
                                 unmodifiable.stream()
                                         .map(u -> {
                                             if (builderProperties.contains(u))
-                                                return "get" + DGenProcessor.proper(u.getName());
+                                                return "get" + DGenProcessor.proper(u.getName()) + "()";
                                             else
                                                 return "this." + u.getName();
                                         })
@@ -206,24 +891,23 @@ public class DGenClass {
                                 cw.println("bean_.set" + DGenProcessor.proper(builderProperty.getName()) +
                                         "(this.get" + DGenProcessor.proper(builderProperty.getName()) + "());");
                             }
-                        cw.println("return bean_;");
+                        cw.println(interned ? "return intern(bean_);" : "return bean_;");
                         cw.endBlock("}");
                         cw.endBlock("}");
                     }
+                    if (reusableBuilder || isImmutable() && !unmodifiable.isEmpty()) printBuilder(cw);
 
                     cw.endBlock("}");
                 } else {
                     cw.print((isPackagePrivate ? "" : "public ") + "interface " + simpleName);
                     if (!interfaces.isEmpty())
-                        cw.print(" extends " + interfaces.stream()
-                                .map(TypeMirror::toString)
-                                .collect(Collectors.joining(", ")));
+                        cw.print(" extends " + String.join(", ", interfaces));
                     cw.startBlock(" {");
 
                     for (DGenProperty property : properties.values()) {
                         cw.println("");
                         DGenProcessor.printAnnotations(cw, property.getGetterAnnotations());
-                        cw.println(property.getType().toString() + " get" +
+                        cw.println(property.getTypeName() + " get" +
                                 DGenProcessor.proper(property.getName()) +
                                 "();");
                         if (!(unmodifiableType || property.isUnmodifiable())) {
@@ -231,12 +915,13 @@ public class DGenClass {
                             DGenProcessor.printAnnotations(cw, property.getSetterAnnotations());
                             cw.println("void set" +
                                     DGenProcessor.proper(property.getName()) +
-                                    "(" + property.getType().toString() + " val);");
+                                    "(" + property.getTypeName() + " val);");
                         }
                     }
                     cw.endBlock("}");
                 }
             }
+            for (DGenCompanion companion : companions) companion.render();
         } catch (Exception e) {
             e.printStackTrace();
         }
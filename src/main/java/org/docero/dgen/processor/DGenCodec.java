@@ -0,0 +1,502 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of binary codec for bean marked with {@link org.docero.dgen.DGenBinary}.
+ * <p>Layout of bean is a sequence of its non transient properties:</p>
+ * <ul>
+ * <li>primitives are written as is;</li>
+ * <li>wrappers are prefixed by byte tag: 0 for null, 1 for value;</li>
+ * <li>strings are written as int length of UTF-8 bytes (-1 for null) and bytes;</li>
+ * <li>enums are written as int ordinal (-1 for null);</li>
+ * <li>lists and maps are written as int size (-1 for null) and elements.</li>
+ * </ul>
+ * <p>For bean marked with {@link org.docero.dgen.DGenDirty} codec also writes delta: dirty mask
+ * (long, or int count and longs of BitSet) followed by values of changed properties in order of bits.
+ * Codec of bean marked only with DGenDirty is generated when all its properties are supported.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenCodec implements DGenCompanion {
+    private final DGenClass bean;
+    private final String codecName;
+    private final Map<String, String> enumValues = new LinkedHashMap<>();
+    private int variables;
+
+    DGenCodec(DGenClass bean) {
+        this.bean = bean;
+        this.codecName = bean.getSimpleName() + "Codec";
+    }
+
+    static boolean isSupported(DGenType type) {
+        switch (type.getKind()) {
+            case LIST:
+                return isSupported(type.getArgument(0));
+            case MAP:
+                return isSupported(type.getArgument(0)) && isSupported(type.getArgument(1));
+            case OTHER:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return properties written by codec, in order of its layout
+     */
+    static List<DGenProperty> serializedProperties(DGenClass bean) {
+        return bean.getProperties().stream()
+                .filter(p -> !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    static void printBeanMethods(JavaClassWriter cw, DGenClass bean) throws IOException {
+        String codecName = bean.getSimpleName() + "Codec";
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        cw.println("");
+        cw.println(access + "int binarySize() {return " + codecName + ".sizeOf(this);}");
+        cw.println(access + "void writeTo(java.nio.ByteBuffer buf) {" + codecName + ".write(this, buf);}");
+        cw.println(access + "static " + bean.getSimpleName() + " readFrom(java.nio.ByteBuffer buf) {return " +
+                codecName + ".read(buf);}");
+    }
+
+    static void printDirtyMethods(JavaClassWriter cw, DGenClass bean) throws IOException {
+        String codecName = bean.getSimpleName() + "Codec";
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        cw.println("");
+        if (bean.isDirtyBitSet()) {
+            cw.println("private final transient java.util.BitSet dirty_ = new java.util.BitSet(" +
+                    bean.getTrackedProperties().size() + ");");
+            cw.println(access + "java.util.BitSet dirtyMask() {return (java.util.BitSet) dirty_.clone();}");
+            cw.println(access + "boolean isDirty() {return !dirty_.isEmpty();}");
+            cw.println(access + "void clearDirty() {dirty_.clear();}");
+        } else {
+            cw.println("private transient long dirty_;");
+            cw.println(access + "long dirtyMask() {return dirty_;}");
+            cw.println(access + "boolean isDirty() {return dirty_ != 0L;}");
+            cw.println(access + "void clearDirty() {dirty_ = 0L;}");
+        }
+        if (!bean.isDeltaWritten()) return;
+        cw.println(access + "int deltaSize() {return " + codecName + ".sizeOfDelta(this);}");
+        cw.println(access + "void writeDelta(java.nio.ByteBuffer buf) {" + codecName + ".writeDelta(this, buf);}");
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Sets properties written by writeDelta, dirty mask of this bean is not changed");
+        cw.println(" */");
+        cw.startBlock(access + "void applyDelta(java.nio.ByteBuffer buf) {");
+        if (bean.isDirtyBitSet()) {
+            cw.println("java.util.BitSet dirty = (java.util.BitSet) dirty_.clone();");
+            cw.println(codecName + ".applyDelta(this, buf);");
+            cw.println("dirty_.clear();");
+            cw.println("dirty_.or(dirty);");
+        } else {
+            cw.println("long dirty = dirty_;");
+            cw.println(codecName + ".applyDelta(this, buf);");
+            cw.println("dirty_ = dirty;");
+        }
+        cw.endBlock("}");
+    }
+
+    private static String isDirty(DGenClass bean, int bit) {
+        return bean.isDirtyBitSet() ? "mask_.get(" + bit + ")" :
+                "(mask_ & 0x" + Long.toHexString(1L << bit) + "L) != 0";
+    }
+
+    private void printDelta(JavaClassWriter cw, String access) throws IOException {
+        String simpleName = bean.getSimpleName();
+        String maskType = bean.isDirtyBitSet() ? "java.util.BitSet" : "long";
+        List<DGenProperty> tracked = bean.getTrackedProperties();
+        /*
+            Size of delta in bytes
+        */
+        cw.println("");
+        cw.startBlock(access + "static int sizeOfDelta(" + simpleName + " bean_) {");
+        cw.println(maskType + " mask_ = bean_.dirtyMask();");
+        cw.println(bean.isDirtyBitSet() ? "int size_ = 4 + 8 * mask_.toLongArray().length;" : "int size_ = 8;");
+        for (int i = 0; i < tracked.size(); i++) {
+            cw.startBlock("if (" + isDirty(bean, i) + ") {");
+            printSize(cw, tracked.get(i).getGenType(), getter(tracked.get(i)));
+            cw.endBlock("}");
+        }
+        cw.println("return size_;");
+        cw.endBlock("}");
+        /*
+            Write changed properties
+        */
+        cw.println("");
+        cw.startBlock(access + "static void writeDelta(" + simpleName + " bean_, java.nio.ByteBuffer buf_) {");
+        cw.println(maskType + " mask_ = bean_.dirtyMask();");
+        if (bean.isDirtyBitSet()) {
+            cw.println("long[] words_ = mask_.toLongArray();");
+            cw.println("buf_.putInt(words_.length);");
+            cw.println("for (long word_ : words_) buf_.putLong(word_);");
+        } else
+            cw.println("buf_.putLong(mask_);");
+        for (int i = 0; i < tracked.size(); i++) {
+            cw.startBlock("if (" + isDirty(bean, i) + ") {");
+            printWrite(cw, tracked.get(i).getGenType(), getter(tracked.get(i)));
+            cw.endBlock("}");
+        }
+        cw.endBlock("}");
+        /*
+            Read changed properties and set them to bean
+        */
+        cw.println("");
+        cw.startBlock(access + "static void applyDelta(" + simpleName + " bean_, java.nio.ByteBuffer buf_) {");
+        if (bean.isDirtyBitSet()) {
+            cw.println("long[] words_ = new long[buf_.getInt()];");
+            cw.println("for (int i_ = 0; i_ < words_.length; i_++) words_[i_] = buf_.getLong();");
+            cw.println("java.util.BitSet mask_ = java.util.BitSet.valueOf(words_);");
+        } else
+            cw.println("long mask_ = buf_.getLong();");
+        for (int i = 0; i < tracked.size(); i++) {
+            cw.startBlock("if (" + isDirty(bean, i) + ") {");
+            String value = printRead(cw, tracked.get(i).getGenType());
+            cw.println("bean_.set" + DGenProcessor.proper(tracked.get(i).getName()) + "(" + value + ");");
+            cw.endBlock("}");
+        }
+        cw.endBlock("}");
+    }
+
+    /**
+     * Checks properties of bean marked only with {@link org.docero.dgen.DGenDirty}, its dirty mask is tracked
+     * for any types, but delta is written only if all properties are supported by codec
+     *
+     * @return false if delta methods are not generated, properties preventing it are reported by warnings
+     */
+    static boolean isDeltaSupported(ProcessingEnvironment processingEnv, DGenClass bean) {
+        boolean supported = true;
+        for (DGenProperty property : serializedProperties(bean))
+            if (!isSupported(property.getGenType())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                        "writeDelta and applyDelta are not generated: type " + property.getTypeName() +
+                                " is not supported by binary codec, mark property as transient",
+                        property.getElement());
+                supported = false;
+            }
+        return supported;
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : serializedProperties(bean))
+            if (!isSupported(property.getGenType())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "type " + property.getTypeName() + " is not supported by binary codec, mark property as transient",
+                        property.getElement());
+                valid = false;
+            }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + codecName)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + codecName + " {");
+            cw.println("private " + codecName + "() {}");
+            /*
+                Size of bean in bytes
+            */
+            cw.println("");
+            cw.startBlock(access + "static int sizeOf(" + simpleName + " bean_) {");
+            cw.println("int size_ = 0;");
+            for (DGenProperty property : serializedProperties(bean))
+                printSize(cw, property.getGenType(), getter(property));
+            cw.println("return size_;");
+            cw.endBlock("}");
+            /*
+                Write bean
+            */
+            cw.println("");
+            cw.startBlock(access + "static void write(" + simpleName + " bean_, java.nio.ByteBuffer buf_) {");
+            for (DGenProperty property : serializedProperties(bean))
+                printWrite(cw, property.getGenType(), getter(property));
+            cw.endBlock("}");
+            /*
+                Read bean, unmodifiable properties passed to constructor as AbstractBuilder does it
+            */
+            cw.println("");
+            cw.startBlock(access + "static " + simpleName + " read(java.nio.ByteBuffer buf_) {");
+            for (DGenProperty property : serializedProperties(bean)) {
+                String value = printRead(cw, property.getGenType());
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = " + value + ";");
+            }
+            bean.printConstruction(cw, serializedProperties(bean));
+            cw.println("return bean_;");
+            cw.endBlock("}");
+
+            if (bean.isDeltaWritten()) printDelta(cw, access);
+            printHelpers(cw);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static String getter(DGenProperty property) {
+        return "bean_.get" + DGenProcessor.proper(property.getName()) + "()";
+    }
+
+    static int fixedSize(DGenType type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+            case BYTE:
+                return 1;
+            case SHORT:
+            case CHAR:
+                return 2;
+            case INT:
+            case FLOAT:
+                return 4;
+            default:
+                return 8;
+        }
+    }
+
+    private void printSize(JavaClassWriter cw, DGenType type, String value) throws IOException {
+        int id = variables++;
+        if (type.isPrimitive()) {
+            cw.println("size_ += " + fixedSize(type) + ";");
+        } else if (type.isBoxed()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN)
+                cw.println("size_ += 1;");
+            else
+                cw.println("size_ += " + value + " == null ? 1 : " + (1 + fixedSize(type)) + ";");
+        } else switch (type.getKind()) {
+            case STRING:
+                cw.println("size_ += sizeOf(" + value + ");");
+                break;
+            case ENUM:
+                cw.println("size_ += 4;");
+                break;
+            case LIST:
+                cw.println("size_ += 4;");
+                cw.println(type + " l" + id + "_ = " + value + ";");
+                cw.startBlock("if (l" + id + "_ != null) for (" + type.getArgument(0) + " e" + id +
+                        "_ : l" + id + "_) {");
+                printSize(cw, type.getArgument(0), "e" + id + "_");
+                cw.endBlock("}");
+                break;
+            case MAP:
+                cw.println("size_ += 4;");
+                cw.println(type + " m" + id + "_ = " + value + ";");
+                cw.startBlock("if (m" + id + "_ != null) for (java.util.Map.Entry<" + type.getArgument(0) + ", " +
+                        type.getArgument(1) + "> e" + id + "_ : m" + id + "_.entrySet()) {");
+                printSize(cw, type.getArgument(0), "e" + id + "_.getKey()");
+                printSize(cw, type.getArgument(1), "e" + id + "_.getValue()");
+                cw.endBlock("}");
+        }
+    }
+
+    static String putMethod(DGenType type) {
+        switch (type.getKind()) {
+            case BYTE:
+                return "put";
+            case SHORT:
+                return "putShort";
+            case CHAR:
+                return "putChar";
+            case INT:
+                return "putInt";
+            case LONG:
+                return "putLong";
+            case FLOAT:
+                return "putFloat";
+            default:
+                return "putDouble";
+        }
+    }
+
+    static String getMethod(DGenType type) {
+        return "get" + putMethod(type).substring(3);
+    }
+
+    private void printWrite(JavaClassWriter cw, DGenType type, String value) throws IOException {
+        int id = variables++;
+        if (type.isPrimitive()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN)
+                cw.println("buf_.put(" + value + " ? (byte) 1 : (byte) 0);");
+            else
+                cw.println("buf_." + putMethod(type) + "(" + value + ");");
+        } else if (type.isBoxed()) {
+            cw.println(type + " v" + id + "_ = " + value + ";");
+            if (type.getKind() == DGenType.Kind.BOOLEAN)
+                cw.println("buf_.put(v" + id + "_ == null ? (byte) 0 : v" + id + "_ ? (byte) 2 : (byte) 1);");
+            else {
+                cw.println("buf_.put(v" + id + "_ == null ? (byte) 0 : (byte) 1);");
+                cw.println("if (v" + id + "_ != null) buf_." + putMethod(type) + "(v" + id + "_);");
+            }
+        } else switch (type.getKind()) {
+            case STRING:
+                cw.println("putString(buf_, " + value + ");");
+                break;
+            case ENUM:
+                cw.println("putEnum(buf_, " + value + ");");
+                break;
+            case LIST:
+                cw.println(type + " l" + id + "_ = " + value + ";");
+                cw.println("buf_.putInt(l" + id + "_ == null ? -1 : l" + id + "_.size());");
+                cw.startBlock("if (l" + id + "_ != null) for (" + type.getArgument(0) + " e" + id +
+                        "_ : l" + id + "_) {");
+                printWrite(cw, type.getArgument(0), "e" + id + "_");
+                cw.endBlock("}");
+                break;
+            case MAP:
+                cw.println(type + " m" + id + "_ = " + value + ";");
+                cw.println("buf_.putInt(m" + id + "_ == null ? -1 : m" + id + "_.size());");
+                cw.startBlock("if (m" + id + "_ != null) for (java.util.Map.Entry<" + type.getArgument(0) + ", " +
+                        type.getArgument(1) + "> e" + id + "_ : m" + id + "_.entrySet()) {");
+                printWrite(cw, type.getArgument(0), "e" + id + "_.getKey()");
+                printWrite(cw, type.getArgument(1), "e" + id + "_.getValue()");
+                cw.endBlock("}");
+        }
+    }
+
+    /**
+     * Prints statements needed for reading value of given type
+     *
+     * @return expression with read value
+     */
+    private String printRead(JavaClassWriter cw, DGenType type) throws IOException {
+        int id = variables++;
+        if (type.isPrimitive()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN) return "buf_.get() != 0";
+            return "buf_." + getMethod(type) + "()";
+        } else if (type.isBoxed()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN) return "getBoolean(buf_)";
+            return "buf_.get() == 0 ? null : " + type.getBoxedName() + ".valueOf(buf_." + getMethod(type) + "())";
+        } else switch (type.getKind()) {
+            case STRING:
+                return "getString(buf_)";
+            case ENUM:
+                String values = enumValues.computeIfAbsent(type.getName(),
+                        n -> "VALUES" + enumValues.size() + "_");
+                return "getEnum(" + values + ", buf_.getInt())";
+            case LIST: {
+                String list = "l" + id + "_";
+                cw.println(type + " " + list + " = null;");
+                cw.println("int n" + id + "_ = buf_.getInt();");
+                cw.startBlock("if (n" + id + "_ >= 0) {");
+                cw.println(list + " = new java.util.ArrayList<>(n" + id + "_);");
+                cw.startBlock("for (int i" + id + "_ = 0; i" + id + "_ < n" + id + "_; i" + id + "_++) {");
+                String element = printRead(cw, type.getArgument(0));
+                cw.println(list + ".add(" + element + ");");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                return list;
+            }
+            default: {
+                String map = "m" + id + "_";
+                cw.println(type + " " + map + " = null;");
+                cw.println("int n" + id + "_ = buf_.getInt();");
+                cw.startBlock("if (n" + id + "_ >= 0) {");
+                cw.println(map + " = new java.util.LinkedHashMap<>(n" + id + "_ * 4 / 3 + 1);");
+                cw.startBlock("for (int i" + id + "_ = 0; i" + id + "_ < n" + id + "_; i" + id + "_++) {");
+                String key = printRead(cw, type.getArgument(0));
+                cw.println(type.getArgument(0).getBoxedName() + " k" + id + "_ = " + key + ";");
+                String value = printRead(cw, type.getArgument(1));
+                cw.println(map + ".put(k" + id + "_, " + value + ");");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                return map;
+            }
+        }
+    }
+
+    private void printHelpers(JavaClassWriter cw) throws IOException {
+        if (!enumValues.isEmpty()) cw.println("");
+        for (Map.Entry<String, String> e : enumValues.entrySet())
+            cw.println("private static final " + e.getKey() + "[] " + e.getValue() + " = " + e.getKey() + ".values();");
+
+        cw.println("");
+        cw.startBlock("static java.lang.Boolean getBoolean(java.nio.ByteBuffer buf) {");
+        cw.println("byte tag = buf.get();");
+        cw.println("return tag == 0 ? null : tag == 2;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static void putEnum(java.nio.ByteBuffer buf, java.lang.Enum<?> value) {");
+        cw.println("buf.putInt(value == null ? -1 : value.ordinal());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static <E> E getEnum(E[] values, int ordinal) {");
+        cw.println("return ordinal < 0 ? null : values[ordinal];");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static int sizeOf(java.lang.String s) {");
+        cw.println("if (s == null) return 4;");
+        cw.println("int size = 4;");
+        cw.startBlock("for (int i = 0, n = s.length(); i < n; i++) {");
+        cw.println("char c = s.charAt(i);");
+        cw.println("if (c < 0x80) size++;");
+        cw.println("else if (c < 0x800) size += 2;");
+        cw.startBlock("else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {");
+        cw.println("size += 4;");
+        cw.println("i++;");
+        cw.endBlock("} else if (Character.isSurrogate(c)) size++;");
+        cw.println("else size += 3;");
+        cw.endBlock("}");
+        cw.println("return size;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static void putString(java.nio.ByteBuffer buf, java.lang.String s) {");
+        cw.startBlock("if (s == null) {");
+        cw.println("buf.putInt(-1);");
+        cw.println("return;");
+        cw.endBlock("}");
+        cw.println("buf.putInt(sizeOf(s) - 4);");
+        cw.startBlock("for (int i = 0, n = s.length(); i < n; i++) {");
+        cw.println("char c = s.charAt(i);");
+        cw.println("if (c < 0x80) buf.put((byte) c);");
+        cw.startBlock("else if (c < 0x800) {");
+        cw.println("buf.put((byte) (0xC0 | c >> 6));");
+        cw.println("buf.put((byte) (0x80 | c & 0x3F));");
+        cw.endBlock("}");
+        cw.startBlock("else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {");
+        cw.println("int cp = Character.toCodePoint(c, s.charAt(++i));");
+        cw.println("buf.put((byte) (0xF0 | cp >> 18));");
+        cw.println("buf.put((byte) (0x80 | cp >> 12 & 0x3F));");
+        cw.println("buf.put((byte) (0x80 | cp >> 6 & 0x3F));");
+        cw.println("buf.put((byte) (0x80 | cp & 0x3F));");
+        cw.endBlock("} else if (Character.isSurrogate(c)) buf.put((byte) '?');");
+        cw.startBlock("else {");
+        cw.println("buf.put((byte) (0xE0 | c >> 12));");
+        cw.println("buf.put((byte) (0x80 | c >> 6 & 0x3F));");
+        cw.println("buf.put((byte) (0x80 | c & 0x3F));");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static java.lang.String getString(java.nio.ByteBuffer buf) {");
+        cw.println("int length = buf.getInt();");
+        cw.println("if (length < 0) return null;");
+        cw.startBlock("if (buf.hasArray()) {");
+        cw.println("java.lang.String s = new java.lang.String(buf.array(), buf.arrayOffset() + buf.position(), length,");
+        cw.println("        java.nio.charset.StandardCharsets.UTF_8);");
+        cw.println("buf.position(buf.position() + length);");
+        cw.println("return s;");
+        cw.endBlock("}");
+        cw.println("byte[] bytes = new byte[length];");
+        cw.println("buf.get(bytes);");
+        cw.println("return new java.lang.String(bytes, java.nio.charset.StandardCharsets.UTF_8);");
+        cw.endBlock("}");
+    }
+}
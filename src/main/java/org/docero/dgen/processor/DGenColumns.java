@@ -0,0 +1,231 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import java.io.IOException;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of struct-of-arrays container for bean marked with {@link org.docero.dgen.DGenColumnar}.
+ * <p>Every property stored in its own array: primitives and wrappers in primitive arrays
+ * (wrappers have additional null bitmap), other types in arrays of references.
+ * Rows are accessed through reusable cursor with the same getters and setters as bean.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenColumns implements DGenCompanion {
+    private final DGenClass bean;
+    private final String className;
+
+    DGenColumns(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Columns";
+    }
+
+    private static String arrayType(DGenType type) {
+        if (type.getPrimitiveName() != null) return type.getPrimitiveName();
+        return type.getArguments().isEmpty() ? type.getName() : "java.lang.Object";
+    }
+
+    private static String nulls(DGenProperty property) {
+        return property.getName() + "Nulls_";
+    }
+
+    /**
+     * @return expression with value of property in row 'index'
+     */
+    private static String value(DGenProperty property) {
+        DGenType type = property.getGenType();
+        String name = property.getName();
+        if (type.isBoxed())
+            return "isNull(" + nulls(property) + ", index_) ? null : " +
+                    type.getBoxedName() + ".valueOf(" + name + "[index_])";
+        else if (arrayType(type).equals("java.lang.Object"))
+            return "(" + type + ") " + name + "[index_]";
+        else
+            return name + "[index_]";
+    }
+
+    private static void printStore(JavaClassWriter cw, DGenProperty property, String value, String index)
+            throws IOException {
+        String name = property.getName();
+        if (property.getGenType().isBoxed() && value.equals("null")) {
+            cw.println(nulls(property) + "[" + index + " >>> 6] |= 1L << " + index + ";");
+            cw.println(name + "[" + index + "] = " + property.getGenType().getPrimitiveDefaultValue() + ";");
+        } else if (property.getGenType().isBoxed()) {
+            cw.startBlock("if (" + value + " == null) {");
+            cw.println(nulls(property) + "[" + index + " >>> 6] |= 1L << " + index + ";");
+            cw.println(name + "[" + index + "] = " + property.getGenType().getPrimitiveDefaultValue() + ";");
+            cw.endBlock("} else {");
+            cw.println("    " + nulls(property) + "[" + index + " >>> 6] &= ~(1L << " + index + ");");
+            cw.println("    " + name + "[" + index + "] = " + value + ";");
+            cw.println("}");
+        } else
+            cw.println(name + "[" + index + "] = " + value + ";");
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        return true;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.println("@SuppressWarnings(\"unchecked\")");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println("private int size_;");
+            cw.println("private int capacity_;");
+            for (DGenProperty property : bean.getProperties()) {
+                cw.println("private " + arrayType(property.getGenType()) + "[] " + property.getName() + ";");
+                if (property.getGenType().isBoxed())
+                    cw.println("private long[] " + nulls(property) + ";");
+            }
+
+            cw.println("");
+            cw.startBlock(access + className + "() {");
+            cw.println("this(16);");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + className + "(int capacity) {");
+            cw.println("allocate(Math.max(capacity, 1));");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private void allocate(int capacity_) {");
+            for (DGenProperty property : bean.getProperties()) {
+                String name = property.getName();
+                String type = arrayType(property.getGenType());
+                cw.println(name + " = " + name + " == null ? new " + type + "[capacity_] : java.util.Arrays.copyOf(" +
+                        name + ", capacity_);");
+                if (property.getGenType().isBoxed())
+                    cw.println(nulls(property) + " = " + nulls(property) + " == null ? new long[(capacity_ + 63) >>> 6] : " +
+                            "java.util.Arrays.copyOf(" + nulls(property) + ", (capacity_ + 63) >>> 6);");
+            }
+            cw.println("this.capacity_ = capacity_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private int nextIndex() {");
+            cw.println("if (size_ == capacity_) allocate(capacity_ + (capacity_ >> 1) + 1);");
+            cw.println("return size_++;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private static boolean isNull(long[] nulls, int index) {");
+            cw.println("return (nulls[index >>> 6] & (1L << index)) != 0;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "int size() {");
+            cw.println("return size_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "void clear() {");
+            for (DGenProperty property : bean.getProperties())
+                if (property.getGenType().getPrimitiveName() == null)
+                    cw.println("java.util.Arrays.fill(" + property.getName() + ", 0, size_, null);");
+            cw.println("size_ = 0;");
+            cw.endBlock("}");
+            /*
+                Append row copied from bean
+            */
+            cw.println("");
+            cw.startBlock(access + "int add(" + simpleName + " bean_) {");
+            cw.println("int index_ = nextIndex();");
+            for (DGenProperty property : bean.getProperties())
+                printStore(cw, property, "bean_.get" + DGenProcessor.proper(property.getName()) + "()", "index_");
+            cw.println("return index_;");
+            cw.endBlock("}");
+            /*
+                Append row with unmodifiable values, other values may be set by returned cursor
+            */
+            cw.println("");
+            cw.startBlock(access + "Cursor append(" + bean.getUnmodifiableProperties().stream()
+                    .map(p -> p.getTypeName() + " v_" + p.getName())
+                    .collect(Collectors.joining(", ")) + ") {");
+            cw.println("int index_ = nextIndex();");
+            for (DGenProperty property : bean.getProperties())
+                if (bean.isUnmodifiable(property))
+                    printStore(cw, property, "v_" + property.getName(), "index_");
+                else
+                    printStore(cw, property, property.getGenType().getDefaultValue(), "index_");
+            cw.println("return new Cursor().at(index_);");
+            cw.endBlock("}");
+            /*
+                Create bean from row
+            */
+            cw.println("");
+            cw.startBlock(access + simpleName + " get(int index_) {");
+            cw.println("if (index_ < 0 || index_ >= size_) throw new IndexOutOfBoundsException(String.valueOf(index_));");
+            for (DGenProperty property : bean.getProperties())
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = " + value(property) + ";");
+            bean.printConstruction(cw, bean.getProperties());
+            cw.println("return bean_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "Cursor cursor() {");
+            cw.println("return new Cursor();");
+            cw.endBlock("}");
+            /*
+                Raw columns for scanning loops, valid for indexes from 0 to size() - 1
+            */
+            for (DGenProperty property : bean.getProperties()) {
+                cw.println("");
+                cw.println(access + arrayType(property.getGenType()) + "[] " + property.getName() +
+                        "Column() {return " + property.getName() + ";}");
+                if (property.getGenType().isBoxed())
+                    cw.println(access + "boolean is" + DGenProcessor.proper(property.getName()) +
+                            "Null(int index) {return isNull(" + nulls(property) + ", index);}");
+            }
+            printCursor(cw, access);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printCursor(JavaClassWriter cw, String access) throws IOException {
+        cw.println("");
+        cw.startBlock(access + "final class Cursor {");
+        cw.println("private int index_ = -1;");
+
+        cw.println("");
+        cw.startBlock(access + "Cursor at(int index_) {");
+        cw.println("if (index_ < 0 || index_ >= size_) throw new IndexOutOfBoundsException(String.valueOf(index_));");
+        cw.println("this.index_ = index_;");
+        cw.println("return this;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "boolean next() {");
+        cw.println("return ++index_ < size_;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "int index() {");
+        cw.println("return index_;");
+        cw.endBlock("}");
+
+        for (DGenProperty property : bean.getProperties()) {
+            cw.println("");
+            cw.println(access + property.getTypeName() + " get" + DGenProcessor.proper(property.getName()) +
+                    "() {return " + value(property) + ";}");
+            if (!bean.isUnmodifiable(property)) {
+                cw.startBlock(access + "void set" + DGenProcessor.proper(property.getName()) +
+                        "(" + property.getTypeName() + " val) {");
+                printStore(cw, property, "val", "index_");
+                cw.endBlock("}");
+            }
+        }
+        cw.endBlock("}");
+    }
+}
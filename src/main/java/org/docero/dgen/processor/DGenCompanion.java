@@ -0,0 +1,18 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+
+/**
+ * Generator of class accompanying bean (codec, store, mapper).
+ * <p>Companion is validated on compiler thread, where it may use compiler model and report errors,
+ * then rendered together with its bean, possibly in parallel with other beans. Rendering uses only
+ * data copied from model during reading and validation.</p>
+ */
+interface DGenCompanion {
+    /**
+     * @return false if companion can not be generated, errors are reported by messager
+     */
+    boolean validate(ProcessingEnvironment processingEnv);
+
+    void render();
+}
@@ -0,0 +1,541 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenCsv;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Generator of delimited text parser for bean marked with {@link DGenCsv}.
+ * <p>Fields of record are not transient properties in order of declaration. Parser reads records from any
+ * CharSequence (String, CharBuffer) or from memory-mapped file without copying of text: numbers, booleans and
+ * enums are parsed from characters in place, only text values are allocated. Stream of records splits text
+ * at line boundaries for parallel processing, so quoted values must not contain line breaks.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenCsvParser implements DGenCompanion {
+    private final DGenClass bean;
+    private final String className;
+    // every helper accepts field with quotes and reads value between them
+    private static final String UNQUOTE = "if (end - start > 1 && text.charAt(start) == '\"') {";
+    private final Map<String, String> enumValues = new LinkedHashMap<>();
+    private final Set<DGenType.Kind> kinds = EnumSet.noneOf(DGenType.Kind.class);
+    private char delimiter;
+    private boolean header;
+
+    DGenCsvParser(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Csv";
+    }
+
+    private static boolean isDecimal(DGenType type) {
+        return type.getName().equals("java.math.BigDecimal") || type.getName().equals("java.math.BigInteger");
+    }
+
+    private static boolean isSupported(DGenType type) {
+        return type.getKind() != DGenType.Kind.LIST && type.getKind() != DGenType.Kind.MAP &&
+                (type.getKind() != DGenType.Kind.OTHER || isDecimal(type));
+    }
+
+    private static String charLiteral(char c) {
+        switch (c) {
+            case '\t':
+                return "'\\t'";
+            case '\'':
+                return "'\\''";
+            case '\\':
+                return "'\\\\'";
+            default:
+                return c < ' ' || c > '~' ? String.format("'\\u%04x'", (int) c) : "'" + c + "'";
+        }
+    }
+
+    private String enumValues(DGenType type) {
+        return enumValues.computeIfAbsent(type.getName(), k -> "VALUES" + enumValues.size() + "_");
+    }
+
+    /**
+     * @return expression reading value of property from field in range [p_, e_) of text
+     */
+    private String valueOf(DGenType type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return type.isPrimitive() ? "e_ > p_ && boolean_(text, p_, e_)" :
+                        "e_ == p_ ? null : java.lang.Boolean.valueOf(boolean_(text, p_, e_))";
+            case CHAR:
+                return type.isPrimitive() ? "e_ == p_ ? (char) 0 : char_(text, p_, e_)" :
+                        "e_ == p_ ? null : java.lang.Character.valueOf(char_(text, p_, e_))";
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG: {
+                String boxed = type.getBoxedName();
+                String primitive = type.getPrimitiveName();
+                String read = "long_(text, p_, e_, " + boxed + ".MIN_VALUE, " + boxed + ".MAX_VALUE)";
+                if (type.getKind() != DGenType.Kind.LONG) read = "(" + primitive + ") " + read;
+                return type.isPrimitive() ? "e_ == p_ ? " + type.getDefaultValue() + " : " + read :
+                        "e_ == p_ ? null : " + boxed + ".valueOf(" + read + ")";
+            }
+            case FLOAT:
+            case DOUBLE: {
+                String read = type.getKind() == DGenType.Kind.FLOAT ? "float_(text, p_, e_)" : "double_(text, p_, e_)";
+                return type.isPrimitive() ? "e_ == p_ ? " + type.getDefaultValue() + " : " + read :
+                        "e_ == p_ ? null : " + type.getBoxedName() + ".valueOf(" + read + ")";
+            }
+            case STRING:
+                return "e_ == p_ ? null : string_(text, p_, e_)";
+            case ENUM:
+                return "e_ == p_ ? null : enum_(text, p_, e_, " + enumValues(type) + ")";
+            default:
+                return "e_ == p_ ? null : new " + type.getErasedName() + "(string_(text, p_, e_))";
+        }
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        List<DGenProperty> fields = DGenJdbcMapper.columnProperties(bean);
+        boolean valid = true;
+        for (DGenProperty property : fields)
+            if (!isSupported(property.getGenType())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "type " + property.getTypeName() + " can not be parsed from text field, mark property as transient",
+                        property.getElement());
+                valid = false;
+            }
+        if (valid && fields.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "bean parsed from delimited text must have not transient properties", bean.getPrototype());
+            valid = false;
+        }
+        DGenCsv csv = bean.getPrototype().getAnnotation(DGenCsv.class);
+        delimiter = csv.delimiter();
+        header = csv.header();
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "delimiter can not be quote or line break", bean.getPrototype());
+            valid = false;
+        }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        List<DGenProperty> fields = DGenJdbcMapper.columnProperties(bean);
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println(access + "static final char DELIMITER = " + charLiteral(delimiter) + ";");
+            cw.println(access + "static final boolean HEADER = " + header + ";");
+            cw.println("private static final int SEGMENT_ = 1 << 30;");
+            cw.println("private static final int MIN_SPLIT_ = 1 << 14;");
+            for (DGenProperty property : fields) {
+                // collects kinds and enum constants before printing of fields
+                valueOf(property.getGenType());
+                kinds.add(property.getGenType().getKind());
+            }
+            if (kinds.contains(DGenType.Kind.DOUBLE)) {
+                StringBuilder powers = new StringBuilder();
+                for (int i = 0; i <= 22; i++) powers.append(i == 0 ? "" : ", ").append("1e").append(i);
+                cw.println("private static final double[] POWERS_ = {" + powers + "};");
+            }
+            if (kinds.contains(DGenType.Kind.FLOAT)) {
+                StringBuilder powers = new StringBuilder();
+                for (int i = 0; i <= 10; i++) powers.append(i == 0 ? "" : ", ").append("1e").append(i).append('f');
+                cw.println("private static final float[] FLOAT_POWERS_ = {" + powers + "};");
+            }
+            for (Map.Entry<String, String> e : enumValues.entrySet())
+                cw.println("private static final " + e.getKey() + "[] " + e.getValue() + " = " + e.getKey() + ".values();");
+            cw.println("");
+            cw.println("private " + className + "() {}");
+            /*
+                Parsing of single record
+            */
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Parses record from line without line terminator");
+            cw.println(" */");
+            cw.startBlock(access + "static " + simpleName + " parse(java.lang.CharSequence line) {");
+            cw.println("return parse(line, 0, line.length());");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Parses record from characters of text in range [from, to) without line terminator,");
+            cw.println(" * empty fields are read as default values of primitives and nulls of other types");
+            cw.println(" */");
+            cw.startBlock(access + "static " + simpleName + " parse(java.lang.CharSequence text, int from, int to) {");
+            cw.println("int p_ = from, e_;");
+            for (int i = 0; i < fields.size(); i++) {
+                DGenProperty property = fields.get(i);
+                if (i > 0) cw.println("p_ = e_ + 1;");
+                cw.println("e_ = end_(text, p_, to);");
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = " + valueOf(property.getGenType()) + ";");
+            }
+            bean.printConstruction(cw, fields);
+            cw.println("return bean_;");
+            cw.endBlock("}");
+            /*
+                Streams of records
+            */
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Stream of records from text, lines end with line feed optionally preceded by carriage return,");
+            cw.println(" * empty lines are skipped. Parallel stream splits text at line boundaries.");
+            cw.println(" */");
+            cw.startBlock(access + "static java.util.stream.Stream<" + simpleName + "> stream(java.lang.CharSequence text, boolean parallel) {");
+            cw.println("int from_ = HEADER ? Math.min(lineEnd_(text, 0, text.length()) + 1, text.length()) : 0;");
+            cw.println("return java.util.stream.StreamSupport.stream(new Records_(text, from_, text.length()), parallel);");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Stream of records from file in UTF-8 or other ASCII compatible encoding, file is memory-mapped");
+            cw.println(" * by segments up to 1 GB cut at line boundaries and text values are decoded from bytes as UTF-8");
+            cw.println(" */");
+            cw.startBlock(access + "static java.util.stream.Stream<" + simpleName + "> stream(java.nio.file.Path file, boolean parallel) throws java.io.IOException {");
+            cw.println("java.util.List<Records_> segments_ = new java.util.ArrayList<>();");
+            cw.startBlock("try (java.nio.channels.FileChannel channel_ = java.nio.channels.FileChannel.open(file, java.nio.file.StandardOpenOption.READ)) {");
+            cw.println("long size_ = channel_.size();");
+            cw.startBlock("for (long position_ = 0; position_ < size_; ) {");
+            cw.println("int length_ = (int) Math.min(size_ - position_, SEGMENT_);");
+            cw.println("java.nio.MappedByteBuffer buffer_ = channel_.map(java.nio.channels.FileChannel.MapMode.READ_ONLY, position_, length_);");
+            cw.startBlock("if (position_ + length_ < size_) {");
+            cw.println("while (length_ > 0 && buffer_.get(length_ - 1) != '\\n') length_--;");
+            cw.println("if (length_ == 0) throw new java.io.IOException(\"line is longer than \" + SEGMENT_ + \" bytes at \" + position_);");
+            cw.endBlock("}");
+            cw.println("Bytes_ text_ = new Bytes_(buffer_, length_);");
+            cw.println("int from_ = HEADER && position_ == 0 ? Math.min(lineEnd_(text_, 0, length_) + 1, length_) : 0;");
+            cw.println("segments_.add(new Records_(text_, from_, length_));");
+            cw.println("position_ += length_;");
+            cw.endBlock("}");
+            cw.endBlock("}");
+            cw.println("return java.util.stream.StreamSupport.stream(new Segments_(segments_.toArray(new Records_[0]), 0, segments_.size()), parallel);");
+            cw.endBlock("}");
+
+            printHelpers(cw);
+            printSpliterators(cw, simpleName);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printHelpers(JavaClassWriter cw) throws IOException {
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return index of delimiter ending field started at 'from' or 'to', delimiters in quotes are skipped");
+        cw.println(" */");
+        cw.startBlock("private static int end_(java.lang.CharSequence text, int from, int to) {");
+        cw.println("boolean quoted_ = false;");
+        cw.startBlock("for (int i_ = from; i_ < to; i_++) {");
+        cw.println("char c_ = text.charAt(i_);");
+        cw.println("if (c_ == '\"') quoted_ = !quoted_;");
+        cw.println("else if (c_ == DELIMITER && !quoted_) return i_;");
+        cw.endBlock("}");
+        cw.println("return Math.max(from, to);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private static int lineEnd_(java.lang.CharSequence text, int from, int to) {");
+        cw.println("for (int i_ = from; i_ < to; i_++) if (text.charAt(i_) == '\\n') return i_;");
+        cw.println("return to;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private static java.lang.String invalid_(java.lang.CharSequence text, int start, int end) {");
+        cw.println("return \"invalid value \\\"\" + text.subSequence(start, end) + \"\\\"\";");
+        cw.endBlock("}");
+
+        if (kinds.contains(DGenType.Kind.BYTE) || kinds.contains(DGenType.Kind.SHORT) ||
+                kinds.contains(DGenType.Kind.INT) || kinds.contains(DGenType.Kind.LONG)) {
+            cw.println("");
+            cw.startBlock("private static long long_(java.lang.CharSequence text, int start, int end, long min, long max) {");
+            cw.startBlock(UNQUOTE);
+            cw.println("start++;");
+            cw.println("end--;");
+            cw.endBlock("}");
+            cw.println("int i_ = start;");
+            cw.println("boolean negative_ = i_ < end && text.charAt(i_) == '-';");
+            cw.println("if (negative_ || i_ < end && text.charAt(i_) == '+') i_++;");
+            cw.println("if (i_ == end) throw new NumberFormatException(invalid_(text, start, end));");
+            cw.println("// accumulated negative to read Long.MIN_VALUE");
+            cw.println("long v_ = 0;");
+            cw.startBlock("for (; i_ < end; i_++) {");
+            cw.println("int d_ = text.charAt(i_) - '0';");
+            cw.println("if (d_ < 0 || d_ > 9 || v_ < (Long.MIN_VALUE + d_) / 10) throw new NumberFormatException(invalid_(text, start, end));");
+            cw.println("v_ = v_ * 10 - d_;");
+            cw.endBlock("}");
+            cw.startBlock("if (!negative_) {");
+            cw.println("if (v_ == Long.MIN_VALUE) throw new NumberFormatException(invalid_(text, start, end));");
+            cw.println("v_ = -v_;");
+            cw.endBlock("}");
+            cw.println("if (v_ < min || v_ > max) throw new NumberFormatException(invalid_(text, start, end));");
+            cw.println("return v_;");
+            cw.endBlock("}");
+        }
+        if (kinds.contains(DGenType.Kind.DOUBLE)) {
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Decimal with up to 18 digits and mantissa not above 2^53 scaled by power of ten not above 22 is");
+            cw.println(" * exactly rounded by one multiplication or division, other values are parsed by Double.parseDouble");
+            cw.println(" */");
+            printDecimal(cw, "double", "1L << 53", 22, "POWERS_", "Double.parseDouble");
+        }
+        if (kinds.contains(DGenType.Kind.FLOAT)) {
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Decimal with up to 18 digits and mantissa not above 2^24 scaled by power of ten not above 10 is");
+            cw.println(" * exactly rounded by one float operation, other values are parsed by Float.parseFloat");
+            cw.println(" */");
+            printDecimal(cw, "float", "1L << 24", 10, "FLOAT_POWERS_", "Float.parseFloat");
+        }
+        if (kinds.contains(DGenType.Kind.BOOLEAN) || kinds.contains(DGenType.Kind.ENUM)) {
+            cw.println("");
+            cw.startBlock("private static boolean matches_(java.lang.CharSequence text, int start, int end, java.lang.String value, boolean ignoreCase) {");
+            cw.println("if (end - start != value.length()) return false;");
+            cw.startBlock("for (int i_ = 0; i_ < value.length(); i_++) {");
+            cw.println("char c_ = text.charAt(start + i_);");
+            cw.println("if (c_ != value.charAt(i_) && !(ignoreCase && Character.toLowerCase(c_) == value.charAt(i_))) return false;");
+            cw.endBlock("}");
+            cw.println("return true;");
+            cw.endBlock("}");
+        }
+        if (kinds.contains(DGenType.Kind.BOOLEAN)) {
+            cw.println("");
+            cw.startBlock("private static boolean boolean_(java.lang.CharSequence text, int start, int end) {");
+            cw.startBlock(UNQUOTE);
+            cw.println("start++;");
+            cw.println("end--;");
+            cw.endBlock("}");
+            cw.println("if (matches_(text, start, end, \"true\", true) || matches_(text, start, end, \"1\", false)) return true;");
+            cw.println("if (matches_(text, start, end, \"false\", true) || matches_(text, start, end, \"0\", false)) return false;");
+            cw.println("throw new IllegalArgumentException(invalid_(text, start, end));");
+            cw.endBlock("}");
+        }
+        if (kinds.contains(DGenType.Kind.ENUM)) {
+            cw.println("");
+            cw.startBlock("private static <E extends java.lang.Enum<E>> E enum_(java.lang.CharSequence text, int start, int end, E[] values) {");
+            cw.startBlock(UNQUOTE);
+            cw.println("start++;");
+            cw.println("end--;");
+            cw.endBlock("}");
+            cw.println("for (E e_ : values) if (matches_(text, start, end, e_.name(), false)) return e_;");
+            cw.println("throw new IllegalArgumentException(invalid_(text, start, end));");
+            cw.endBlock("}");
+        }
+        if (kinds.contains(DGenType.Kind.CHAR)) {
+            cw.println("");
+            cw.startBlock("private static char char_(java.lang.CharSequence text, int start, int end) {");
+            cw.startBlock(UNQUOTE);
+            cw.println("start++;");
+            cw.println("end--;");
+            cw.endBlock("}");
+            cw.println("if (end - start != 1) throw new IllegalArgumentException(invalid_(text, start, end));");
+            cw.println("return text.charAt(start);");
+            cw.endBlock("}");
+        }
+        if (kinds.contains(DGenType.Kind.STRING) || kinds.contains(DGenType.Kind.OTHER)) {
+            cw.println("");
+            cw.startBlock("private static java.lang.String string_(java.lang.CharSequence text, int start, int end) {");
+            cw.println("boolean quoted_ = end - start > 1 && text.charAt(start) == '\"';");
+            cw.println("java.lang.CharSequence s_ = quoted_ ? text.subSequence(start + 1, end - 1) : text.subSequence(start, end);");
+            cw.println("return quoted_ ? s_.toString().replace(\"\\\"\\\"\", \"\\\"\") : s_.toString();");
+            cw.endBlock("}");
+        }
+    }
+
+    /**
+     * Prints parser of decimal to primitive 'type' with fast path for exact mantissa and powers of ten
+     */
+    private static void printDecimal(JavaClassWriter cw, String type, String maxMantissa, int maxScale,
+                                     String powers, String fallback) throws IOException {
+        cw.startBlock("private static " + type + " " + type + "_(java.lang.CharSequence text, int start, int end) {");
+        cw.startBlock(UNQUOTE);
+        cw.println("start++;");
+        cw.println("end--;");
+        cw.endBlock("}");
+        cw.println("int i_ = start;");
+        cw.println("boolean negative_ = i_ < end && text.charAt(i_) == '-';");
+        cw.println("if (negative_ || i_ < end && text.charAt(i_) == '+') i_++;");
+        cw.println("long m_ = 0;");
+        cw.println("int scale_ = 0, digits_ = 0;");
+        cw.println("boolean dot_ = false, any_ = false;");
+        cw.startBlock("for (; i_ < end; i_++) {");
+        cw.println("char c_ = text.charAt(i_);");
+        cw.startBlock("if (c_ >= '0' && c_ <= '9') {");
+        cw.println("any_ = true;");
+        cw.println("if (m_ != 0 || c_ != '0') digits_++;");
+        cw.println("if (digits_ <= 18) m_ = m_ * 10 + (c_ - '0');");
+        cw.println("if (dot_) scale_--;");
+        cw.endBlock("} else if (c_ == '.' && !dot_) dot_ = true;");
+        cw.println("else break;");
+        cw.endBlock("}");
+        cw.startBlock("if (i_ < end && (text.charAt(i_) == 'e' || text.charAt(i_) == 'E')) {");
+        cw.println("int j_ = i_ + 1, exponent_ = 0;");
+        cw.println("boolean negativeExponent_ = j_ < end && text.charAt(j_) == '-';");
+        cw.println("if (negativeExponent_ || j_ < end && text.charAt(j_) == '+') j_++;");
+        cw.println("int digitsFrom_ = j_;");
+        cw.println("for (; j_ < end && text.charAt(j_) >= '0' && text.charAt(j_) <= '9' && exponent_ < 1000; j_++)");
+        cw.println("    exponent_ = exponent_ * 10 + (text.charAt(j_) - '0');");
+        cw.startBlock("if (j_ > digitsFrom_) {");
+        cw.println("scale_ += negativeExponent_ ? -exponent_ : exponent_;");
+        cw.println("i_ = j_;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.startBlock("if (any_ && i_ == end && digits_ <= 18 && m_ <= " + maxMantissa + " && scale_ >= -" + maxScale +
+                " && scale_ <= " + maxScale + ") {");
+        cw.println(type + " v_ = scale_ < 0 ? m_ / " + powers + "[-scale_] : m_ * " + powers + "[scale_];");
+        cw.println("return negative_ ? -v_ : v_;");
+        cw.endBlock("}");
+        cw.println("return " + fallback + "(text.subSequence(start, end).toString());");
+        cw.endBlock("}");
+    }
+
+    private void printSpliterators(JavaClassWriter cw, String simpleName) throws IOException {
+        String spliterator = "java.util.Spliterator<" + simpleName + ">";
+        String consumer = "java.util.function.Consumer<? super " + simpleName + ">";
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Records of text in range [position, end), size is estimated by count of characters");
+        cw.println(" */");
+        cw.startBlock("private static final class Records_ implements " + spliterator + " {");
+        cw.println("private final java.lang.CharSequence text;");
+        cw.println("private int position;");
+        cw.println("private final int end;");
+        cw.println("");
+        cw.startBlock("Records_(java.lang.CharSequence text, int position, int end) {");
+        cw.println("this.text = text;");
+        cw.println("this.position = position;");
+        cw.println("this.end = end;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public boolean tryAdvance(" + consumer + " action) {");
+        cw.startBlock("while (position < end) {");
+        cw.println("int from_ = position, to_ = lineEnd_(text, from_, end);");
+        cw.println("position = Math.min(to_ + 1, end);");
+        cw.println("if (to_ > from_ && text.charAt(to_ - 1) == '\\r') to_--;");
+        cw.startBlock("if (to_ > from_) {");
+        cw.println("action.accept(parse(text, from_, to_));");
+        cw.println("return true;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.println("return false;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public " + spliterator + " trySplit() {");
+        cw.println("if (end - position < MIN_SPLIT_) return null;");
+        cw.println("int split_ = lineEnd_(text, position + (end - position) / 2, end) + 1;");
+        cw.println("if (split_ >= end) return null;");
+        cw.println("Records_ prefix_ = new Records_(text, position, split_);");
+        cw.println("position = split_;");
+        cw.println("return prefix_;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public long estimateSize() {");
+        cw.println("return end - position;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public int characteristics() {");
+        cw.println("return ORDERED | NONNULL | IMMUTABLE;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Records of file segments, splits by segments and then by lines of last segment");
+        cw.println(" */");
+        cw.startBlock("private static final class Segments_ implements " + spliterator + " {");
+        cw.println("private final Records_[] segments;");
+        cw.println("private int from;");
+        cw.println("private final int to;");
+        cw.println("");
+        cw.startBlock("Segments_(Records_[] segments, int from, int to) {");
+        cw.println("this.segments = segments;");
+        cw.println("this.from = from;");
+        cw.println("this.to = to;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public boolean tryAdvance(" + consumer + " action) {");
+        cw.startBlock("for (; from < to; from++) {");
+        cw.println("if (segments[from].tryAdvance(action)) return true;");
+        cw.endBlock("}");
+        cw.println("return false;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public " + spliterator + " trySplit() {");
+        cw.println("if (to - from == 1) return segments[from].trySplit();");
+        cw.println("if (to - from < 1) return null;");
+        cw.println("int middle_ = (from + to) >>> 1;");
+        cw.println("Segments_ prefix_ = new Segments_(segments, from, middle_);");
+        cw.println("from = middle_;");
+        cw.println("return prefix_;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public long estimateSize() {");
+        cw.println("long size_ = 0;");
+        cw.println("for (int i_ = from; i_ < to; i_++) size_ += segments[i_].estimateSize();");
+        cw.println("return size_;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public int characteristics() {");
+        cw.println("return ORDERED | NONNULL | IMMUTABLE;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Bytes of mapped segment as characters of ISO-8859-1, sub-sequences are decoded as UTF-8");
+        cw.println(" */");
+        cw.startBlock("private static final class Bytes_ implements java.lang.CharSequence {");
+        cw.println("private final java.nio.ByteBuffer bytes;");
+        cw.println("private final int length;");
+        cw.println("");
+        cw.startBlock("Bytes_(java.nio.ByteBuffer bytes, int length) {");
+        cw.println("this.bytes = bytes;");
+        cw.println("this.length = length;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public int length() {");
+        cw.println("return length;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public char charAt(int index) {");
+        cw.println("return (char) (bytes.get(index) & 0xFF);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.lang.CharSequence subSequence(int start, int end) {");
+        cw.println("byte[] b_ = new byte[end - start];");
+        cw.println("for (int i_ = 0; i_ < b_.length; i_++) b_[i_] = bytes.get(start + i_);");
+        cw.println("return new java.lang.String(b_, java.nio.charset.StandardCharsets.UTF_8);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.lang.String toString() {");
+        cw.println("return subSequence(0, length).toString();");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
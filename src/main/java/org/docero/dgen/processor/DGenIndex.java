@@ -0,0 +1,271 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.Element;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compile-time index of generated beans, so applications resolve bean metadata without classpath scanning.
+ * <p>Index is written to META-INF/dgen/beans.index of class output as UTF-8 text with tab separated values:
+ * line 'bean' with class name, prototype and flags is followed by lines 'class' with every class generated
+ * from prototype and lines 'property' with name, type and flags of every property. Flags are comma separated
+ * words: interface, package-private, unmodifiable for bean and unmodifiable, transient, required for property.</p>
+ * <p>Index is written only when option -Adgen.registry=qualified.ClassName gives name of registry class, which
+ * loads indexes of all class path entries. Name of registry must be unique for every module, registries of
+ * modules with same name would be duplicate classes on class path.</p>
+ * <p>Index is written at the end of processing from beans of all rounds, so while it is enabled processor
+ * declares itself aggregating for Gradle incremental compilation, otherwise processor stays isolating.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenIndex {
+    static final String OPTION = "dgen.registry";
+    static final String RESOURCE = "META-INF/dgen/beans.index";
+
+    private final StringBuilder index = new StringBuilder();
+    private final List<Element> prototypes = new ArrayList<>();
+    private final String registryClass;
+    private boolean registryWritten;
+
+    private DGenIndex(String registryClass) {
+        this.registryClass = registryClass;
+    }
+
+    /**
+     * @return index writing registry named by option, or null if option is not specified
+     */
+    static DGenIndex of(ProcessingEnvironment environment) {
+        String option = environment.getOptions().get(OPTION);
+        return option == null || option.trim().isEmpty() ? null : new DGenIndex(option.trim());
+    }
+
+    /**
+     * Adds bean to index, must be called on compiler thread after its sources are written
+     */
+    void add(DGenClass bean) {
+        prototypes.add(bean.getPrototype());
+        List<String> flags = new ArrayList<>();
+        if (bean.isInterface()) flags.add("interface");
+        if (bean.isPackagePrivate()) flags.add("package-private");
+        if (!bean.isInterface() && bean.getProperties().stream().allMatch(bean::isUnmodifiable)) flags.add("unmodifiable");
+        index.append("bean\t").append(bean.getTargetClassName()).append('\t').append(bean.getSourceName())
+                .append('\t').append(String.join(",", flags)).append('\n');
+        for (String className : bean.getGeneratedClasses())
+            index.append("class\t").append(className).append('\n');
+        for (DGenProperty property : bean.getProperties()) {
+            flags.clear();
+            if (bean.isUnmodifiable(property)) flags.add("unmodifiable");
+            if (property.isTransient()) flags.add("transient");
+            if (property.isRequired()) flags.add("required");
+            index.append("property\t").append(property.getName()).append('\t').append(property.getTypeName())
+                    .append('\t').append(String.join(",", flags)).append('\n');
+        }
+    }
+
+    /**
+     * Writes registry class if it is not written yet, must be called on compiler thread
+     *
+     * @param beans beans of round, registry is written in first round with beans
+     */
+    void writeRegistry(ProcessingEnvironment environment, List<DGenClass> beans) {
+        if (registryWritten || beans.isEmpty()) return;
+        registryWritten = true;
+        try (JavaClassWriter cw = new JavaClassWriter(registryClass)) {
+            renderRegistry(cw);
+            cw.writeTo(environment.getFiler(), beans.stream().map(DGenClass::getPrototype).toArray(Element[]::new));
+        } catch (IOException e) {
+            environment.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "dgen: registry " + registryClass + " is not written: " + e.getMessage());
+        }
+    }
+
+    void write(ProcessingEnvironment environment) {
+        if (prototypes.isEmpty()) return;
+        try {
+            FileObject file = environment.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", RESOURCE,
+                    prototypes.toArray(new Element[0]));
+            try (Writer writer = file.openWriter()) {
+                writer.write(index.toString());
+            }
+        } catch (IOException e) {
+            environment.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "dgen: index " + RESOURCE + " is not written: " + e.getMessage());
+        }
+    }
+
+    private void renderRegistry(JavaClassWriter cw) {
+        int dot = registryClass.lastIndexOf('.');
+        String simpleName = registryClass.substring(dot + 1);
+        if (dot > 0) cw.println("package " + registryClass.substring(0, dot) + ";");
+        cw.startBlock("/*");
+        cw.println("This class is generated by Docero Generation Library. Any modifications may be lost on compile stage!");
+        cw.endBlock("*/");
+        cw.println("/**");
+        cw.println(" * Metadata of beans generated by Docero Generation Library, read from " + RESOURCE);
+        cw.println(" * resources of class path once on first access without scanning of classes or reflection");
+        cw.println(" */");
+        cw.startBlock("public final class " + simpleName + " {");
+        cw.println("public static final java.lang.String INDEX = \"" + RESOURCE + "\";");
+        cw.println("private static final java.util.Map<java.lang.String, Bean> BEANS_ = new java.util.LinkedHashMap<>();");
+        cw.println("private static final java.util.Map<java.lang.String, Bean> CLASSES_ = new java.util.HashMap<>();");
+        cw.println("");
+        cw.startBlock("static {");
+        cw.println("java.lang.ClassLoader loader_ = " + simpleName + ".class.getClassLoader();");
+        cw.startBlock("try {");
+        cw.println("java.util.Enumeration<java.net.URL> urls_ = loader_.getResources(INDEX);");
+        cw.println("while (urls_.hasMoreElements()) load(urls_.nextElement());");
+        cw.println("for (Bean bean_ : BEANS_.values()) for (java.lang.String c_ : bean_.classes) CLASSES_.putIfAbsent(c_, bean_);");
+        cw.endBlock("} catch (java.io.IOException e) {");
+        cw.println("    throw new java.io.UncheckedIOException(e);");
+        cw.println("}");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("private " + simpleName + "() {}");
+        cw.println("");
+        cw.startBlock("private static void load(java.net.URL url_) throws java.io.IOException {");
+        cw.startBlock("try (java.io.BufferedReader in_ = new java.io.BufferedReader(new java.io.InputStreamReader(" +
+                "url_.openStream(), java.nio.charset.StandardCharsets.UTF_8))) {");
+        cw.println("Bean bean_ = null;");
+        cw.println("java.lang.String line_;");
+        cw.startBlock("while ((line_ = in_.readLine()) != null) {");
+        cw.println("java.lang.String[] v_ = line_.split(\"\\t\", -1);");
+        cw.startBlock("switch (v_[0]) {");
+        cw.println("case \"bean\":");
+        cw.println("    bean_ = new Bean(v_[1], v_[2], v_[3]);");
+        cw.println("    if (BEANS_.putIfAbsent(bean_.name, bean_) != null) bean_ = null;");
+        cw.println("    break;");
+        cw.println("case \"class\":");
+        cw.println("    if (bean_ != null) bean_.classes.add(v_[1]);");
+        cw.println("    break;");
+        cw.println("case \"property\":");
+        cw.println("    if (bean_ != null) bean_.properties.put(v_[1], new Property(v_[1], v_[2], v_[3]));");
+        cw.println("    break;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return bean generated to class or its companion class with given name, or null if it is not indexed");
+        cw.println(" */");
+        cw.startBlock("public static Bean get(java.lang.String className) {");
+        cw.println("return CLASSES_.get(className);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public static Bean get(java.lang.Class<?> type) {");
+        cw.println("return CLASSES_.get(type.getName());");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public static java.util.Collection<Bean> beans() {");
+        cw.println("return java.util.Collections.unmodifiableCollection(BEANS_.values());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("public static final class Bean {");
+        cw.println("private final java.lang.String name;");
+        cw.println("private final java.lang.String prototype;");
+        cw.println("private final java.util.Set<java.lang.String> flags;");
+        cw.println("private final java.util.List<java.lang.String> classes = new java.util.ArrayList<>();");
+        cw.println("private final java.util.Map<java.lang.String, Property> properties = new java.util.LinkedHashMap<>();");
+        cw.println("");
+        cw.startBlock("private Bean(java.lang.String name, java.lang.String prototype, java.lang.String flags) {");
+        cw.println("this.name = name;");
+        cw.println("this.prototype = prototype;");
+        cw.println("this.flags = flags(flags);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public java.lang.String getName() {");
+        cw.println("return name;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public java.lang.String getPrototype() {");
+        cw.println("return prototype;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isInterface() {");
+        cw.println("return flags.contains(\"interface\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isPackagePrivate() {");
+        cw.println("return flags.contains(\"package-private\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isUnmodifiable() {");
+        cw.println("return flags.contains(\"unmodifiable\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return qualified names of bean class and its companion classes");
+        cw.println(" */");
+        cw.startBlock("public java.util.List<java.lang.String> getClasses() {");
+        cw.println("return java.util.Collections.unmodifiableList(classes);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public java.util.Collection<Property> getProperties() {");
+        cw.println("return java.util.Collections.unmodifiableCollection(properties.values());");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public Property getProperty(java.lang.String name) {");
+        cw.println("return properties.get(name);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.lang.String toString() {");
+        cw.println("return name;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("public static final class Property {");
+        cw.println("private final java.lang.String name;");
+        cw.println("private final java.lang.String type;");
+        cw.println("private final java.util.Set<java.lang.String> flags;");
+        cw.println("");
+        cw.startBlock("private Property(java.lang.String name, java.lang.String type, java.lang.String flags) {");
+        cw.println("this.name = name;");
+        cw.println("this.type = type;");
+        cw.println("this.flags = flags(flags);");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public java.lang.String getName() {");
+        cw.println("return name;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return source name of property type with type arguments");
+        cw.println(" */");
+        cw.startBlock("public java.lang.String getType() {");
+        cw.println("return type;");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isUnmodifiable() {");
+        cw.println("return flags.contains(\"unmodifiable\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isTransient() {");
+        cw.println("return flags.contains(\"transient\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.startBlock("public boolean isRequired() {");
+        cw.println("return flags.contains(\"required\");");
+        cw.endBlock("}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.lang.String toString() {");
+        cw.println("return name + \": \" + type;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private static java.util.Set<java.lang.String> flags(java.lang.String flags_) {");
+        cw.println("if (flags_.isEmpty()) return java.util.Collections.emptySet();");
+        cw.println("return new java.util.HashSet<>(java.util.Arrays.asList(flags_.split(\",\")));");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
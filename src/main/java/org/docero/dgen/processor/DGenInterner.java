@@ -0,0 +1,79 @@
+package org.docero.dgen.processor;
+
+import java.io.IOException;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of canonicalizing intern table for bean marked with {@link org.docero.dgen.DGenInterned}.
+ * <p>Table is split to lock-striped segments of weak hash maps, so equal instances are shared
+ * while somebody uses them and may be collected after that.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenInterner {
+    private DGenInterner() {
+    }
+
+    static void printInterning(JavaClassWriter cw, DGenClass bean) throws IOException {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        String table = "java.util.Map<" + simpleName + ", java.lang.ref.WeakReference<" + simpleName + ">>";
+
+        cw.println("");
+        cw.println("private static final int INTERN_STRIPES_ = Integer.highestOneBit(");
+        cw.println("        Runtime.getRuntime().availableProcessors() * 4 - 1) << 1;");
+        cw.println("@SuppressWarnings({\"unchecked\", \"rawtypes\"})");
+        cw.println("private static final " + table + "[] INTERNED_ = new java.util.Map[INTERN_STRIPES_];");
+        cw.println("private static final java.util.concurrent.atomic.LongAdder INTERN_HITS_ = " +
+                "new java.util.concurrent.atomic.LongAdder();");
+        cw.println("private static final java.util.concurrent.atomic.LongAdder INTERN_MISSES_ = " +
+                "new java.util.concurrent.atomic.LongAdder();");
+
+        cw.startBlock("static {");
+        cw.println("for (int i = 0; i < INTERN_STRIPES_; i++) INTERNED_[i] = new java.util.WeakHashMap<>();");
+        cw.endBlock("}");
+        /*
+            Canonical instance lookup
+        */
+        cw.println("");
+        cw.startBlock(access + "static " + simpleName + " intern(" + simpleName + " bean) {");
+        cw.println("if (bean == null) return null;");
+        cw.println("int h = bean.hashCode();");
+        cw.println(table + " segment = INTERNED_[(h ^ (h >>> 16)) & (INTERN_STRIPES_ - 1)];");
+        cw.startBlock("synchronized (segment) {");
+        cw.println("java.lang.ref.WeakReference<" + simpleName + "> ref = segment.get(bean);");
+        cw.println(simpleName + " canonical = ref == null ? null : ref.get();");
+        cw.startBlock("if (canonical != null) {");
+        cw.println("INTERN_HITS_.increment();");
+        cw.println("return canonical;");
+        cw.endBlock("}");
+        cw.println("segment.put(bean, new java.lang.ref.WeakReference<>(bean));");
+        cw.endBlock("}");
+        cw.println("INTERN_MISSES_.increment();");
+        cw.println("return bean;");
+        cw.endBlock("}");
+        /*
+            Factory method replacing constructor
+        */
+        cw.println("");
+        cw.startBlock(access + "static " + simpleName + " of(" + bean.getUnmodifiableProperties().stream()
+                .map(p -> p.getTypeName() + " " + p.getName())
+                .collect(Collectors.joining(", ")) + ") {");
+        cw.println("return intern(new " + simpleName + "(" + bean.getUnmodifiableProperties().stream()
+                .map(DGenProperty::getName)
+                .collect(Collectors.joining(", ")) + "));");
+        cw.endBlock("}");
+        /*
+            Statistics of intern table
+        */
+        cw.println("");
+        cw.println(access + "static long internHits() {return INTERN_HITS_.sum();}");
+        cw.println(access + "static long internMisses() {return INTERN_MISSES_.sum();}");
+        cw.startBlock(access + "static int internSize() {");
+        cw.println("int size = 0;");
+        cw.startBlock("for (" + table + " segment : INTERNED_) {");
+        cw.println("synchronized (segment) {size += segment.size();}");
+        cw.endBlock("}");
+        cw.println("return size;");
+        cw.endBlock("}");
+    }
+}
@@ -0,0 +1,318 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenJdbc;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of JDBC row mapper and statement binder for bean marked with {@link DGenJdbc}.
+ * <p>Column of property is its name in snake case, table is snake case name of bean if it is not
+ * specified by annotation. Row mapper resolves indexes of columns once for every ResultSet and reads
+ * values by typed getters, absent columns are left with default values. Binder sets parameters of insert
+ * statement in order of properties and sends beans to database by batches.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenJdbcMapper implements DGenCompanion {
+    private final DGenClass bean;
+    private final String className;
+    private String table;
+
+    DGenJdbcMapper(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Jdbc";
+    }
+
+    static String snakeCase(String name) {
+        return name.replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase(Locale.ROOT);
+    }
+
+    static List<DGenProperty> columnProperties(DGenClass bean) {
+        return bean.getProperties().stream()
+                .filter(p -> !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * @return lower case labels of columns resolved to property: snake case column and property name
+     */
+    private static Set<String> columnLabels(DGenProperty property) {
+        Set<String> labels = new LinkedHashSet<>();
+        labels.add(snakeCase(property.getName()));
+        labels.add(property.getName().toLowerCase(Locale.ROOT));
+        return labels;
+    }
+
+    private static boolean isSupported(DGenType type) {
+        return type.getKind() != DGenType.Kind.LIST && type.getKind() != DGenType.Kind.MAP &&
+                type.getArguments().isEmpty();
+    }
+
+    /**
+     * @return name of java.sql.Types constant for null value, or null if type of column is not known
+     */
+    private static String sqlType(DGenType type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "BOOLEAN";
+            case BYTE:
+                return "TINYINT";
+            case SHORT:
+                return "SMALLINT";
+            case CHAR:
+                return "CHAR";
+            case INT:
+                return "INTEGER";
+            case LONG:
+                return "BIGINT";
+            case FLOAT:
+                return "REAL";
+            case DOUBLE:
+                return "DOUBLE";
+            case STRING:
+            case ENUM:
+                return "VARCHAR";
+            default:
+                return type.getName().equals("java.math.BigDecimal") ? "NUMERIC" : null;
+        }
+    }
+
+    private static String typed(DGenType type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "Boolean";
+            case BYTE:
+                return "Byte";
+            case SHORT:
+                return "Short";
+            case INT:
+                return "Int";
+            case LONG:
+                return "Long";
+            case FLOAT:
+                return "Float";
+            default:
+                return "Double";
+        }
+    }
+
+    /**
+     * Prints reading of column with index 'column' to variable 'v_name'
+     */
+    private static void printGet(JavaClassWriter cw, DGenProperty property, String column) throws IOException {
+        DGenType type = property.getGenType();
+        String value = "v_" + property.getName();
+        cw.println(property.getTypeName() + " " + value + " = " + type.getDefaultValue() + ";");
+        cw.startBlock("if (" + column + " > 0) {");
+        if (type.getKind() == DGenType.Kind.CHAR) {
+            cw.println("java.lang.String s_ = rs_.getString(" + column + ");");
+            cw.println("if (s_ != null && !s_.isEmpty()) " + value + " = s_.charAt(0);");
+        } else if (type.isPrimitive()) {
+            cw.println(value + " = rs_.get" + typed(type) + "(" + column + ");");
+        } else if (type.isBoxed()) {
+            cw.println(type.getPrimitiveName() + " p_ = rs_.get" + typed(type) + "(" + column + ");");
+            cw.println("if (!rs_.wasNull()) " + value + " = p_;");
+        } else switch (type.getKind()) {
+            case STRING:
+                cw.println(value + " = rs_.getString(" + column + ");");
+                break;
+            case ENUM:
+                cw.println("java.lang.String s_ = rs_.getString(" + column + ");");
+                cw.println("if (s_ != null) " + value + " = " + type.getName() + ".valueOf(s_);");
+                break;
+            default:
+                cw.println(value + " = rs_.getObject(" + column + ", " + type.getErasedName() + ".class);");
+        }
+        cw.endBlock("}");
+    }
+
+    /**
+     * Prints setting of statement parameter with index 'parameter' to value of bean property
+     */
+    private static void printSet(JavaClassWriter cw, DGenProperty property, int parameter) throws IOException {
+        DGenType type = property.getGenType();
+        String value = "bean_.get" + DGenProcessor.proper(property.getName()) + "()";
+        if (type.getKind() == DGenType.Kind.CHAR && type.isPrimitive())
+            cw.println("ps_.setString(" + parameter + ", java.lang.String.valueOf(" + value + "));");
+        else if (type.isPrimitive())
+            cw.println("ps_.set" + typed(type) + "(" + parameter + ", " + value + ");");
+        else if (sqlType(type) == null)
+            cw.println("ps_.setObject(" + parameter + ", " + value + ");");
+        else {
+            String v = "v" + parameter + "_";
+            cw.println(type.getName() + " " + v + " = " + value + ";");
+            cw.println("if (" + v + " == null) ps_.setNull(" + parameter + ", java.sql.Types." + sqlType(type) + ");");
+            if (type.getKind() == DGenType.Kind.STRING)
+                cw.println("else ps_.setString(" + parameter + ", " + v + ");");
+            else if (type.getKind() == DGenType.Kind.ENUM)
+                cw.println("else ps_.setString(" + parameter + ", " + v + ".name());");
+            else if (type.getKind() == DGenType.Kind.CHAR)
+                cw.println("else ps_.setString(" + parameter + ", " + v + ".toString());");
+            else if (type.isBoxed())
+                cw.println("else ps_.set" + typed(type) + "(" + parameter + ", " + v + ");");
+            else
+                cw.println("else ps_.setObject(" + parameter + ", " + v + ");");
+        }
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        List<DGenProperty> columns = columnProperties(bean);
+        boolean valid = true;
+        for (DGenProperty property : columns)
+            if (!isSupported(property.getGenType())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "type " + property.getTypeName() + " can not be mapped to column, mark property as transient",
+                        property.getElement());
+                valid = false;
+            }
+        if (valid && columns.isEmpty()) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "bean mapped to table must have not transient properties", bean.getPrototype());
+            valid = false;
+        }
+        Map<String, DGenProperty> labels = new HashMap<>();
+        for (DGenProperty property : columns)
+            for (String label : columnLabels(property)) {
+                DGenProperty other = labels.putIfAbsent(label, property);
+                if (other != null && other != property) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "column label " + label + " of property " + property.getName() +
+                                    " is the same as of property " + other.getName(),
+                            property.getElement());
+                    valid = false;
+                }
+            }
+        table = bean.getPrototype().getAnnotation(DGenJdbc.class).table();
+        if (table.isEmpty()) table = snakeCase(bean.getSimpleName());
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        List<DGenProperty> columns = columnProperties(bean);
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println(access + "static final java.lang.String TABLE = \"" + table + "\";");
+            cw.println(access + "static final java.lang.String COLUMNS = \"" + columns.stream()
+                    .map(p -> snakeCase(p.getName()))
+                    .collect(Collectors.joining(", ")) + "\";");
+            cw.println(access + "static final java.lang.String INSERT = \"INSERT INTO \" + TABLE + \" (\" + COLUMNS + \")" +
+                    " VALUES (" + columns.stream().map(p -> "?").collect(Collectors.joining(", ")) + ")\";");
+            cw.println("");
+            cw.println("private " + className + "() {}");
+            /*
+                Bind bean to parameters of INSERT statement
+            */
+            cw.println("");
+            cw.startBlock(access + "static void bind(java.sql.PreparedStatement ps_, " + simpleName +
+                    " bean_) throws java.sql.SQLException {");
+            for (int i = 0; i < columns.size(); i++)
+                printSet(cw, columns.get(i), i + 1);
+            cw.endBlock("}");
+            /*
+                Batched insert
+            */
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Inserts beans by INSERT statement executed in batches of 'batchSize' rows");
+            cw.println(" *");
+            cw.println(" * @return count of inserted rows, rows successfully inserted with unknown count are counted as one");
+            cw.println(" */");
+            cw.startBlock(access + "static int insert(java.sql.Connection connection, java.lang.Iterable<? extends " +
+                    simpleName + "> beans, int batchSize) throws java.sql.SQLException {");
+            cw.println("if (batchSize < 1) throw new IllegalArgumentException(\"batchSize must be positive\");");
+            cw.println("int rows_ = 0, batch_ = 0;");
+            cw.startBlock("try (java.sql.PreparedStatement ps_ = connection.prepareStatement(INSERT)) {");
+            cw.startBlock("for (" + simpleName + " bean_ : beans) {");
+            cw.println("bind(ps_, bean_);");
+            cw.println("ps_.addBatch();");
+            cw.startBlock("if (++batch_ == batchSize) {");
+            cw.println("rows_ += count(ps_.executeBatch());");
+            cw.println("batch_ = 0;");
+            cw.endBlock("}");
+            cw.endBlock("}");
+            cw.println("if (batch_ > 0) rows_ += count(ps_.executeBatch());");
+            cw.endBlock("}");
+            cw.println("return rows_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private static int count(int[] counts_) {");
+            cw.println("int rows_ = 0;");
+            cw.println("for (int c_ : counts_) rows_ += c_ == java.sql.Statement.SUCCESS_NO_INFO ? 1 : Math.max(c_, 0);");
+            cw.println("return rows_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "static java.util.List<" + simpleName + "> readAll(java.sql.ResultSet rs) " +
+                    "throws java.sql.SQLException {");
+            cw.println("RowMapper mapper_ = new RowMapper();");
+            cw.println("java.util.List<" + simpleName + "> list_ = new java.util.ArrayList<>();");
+            cw.println("while (rs.next()) list_.add(mapper_.mapRow(rs, list_.size()));");
+            cw.println("return list_;");
+            cw.endBlock("}");
+
+            printRowMapper(cw, access, columns);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printRowMapper(JavaClassWriter cw, String access, List<DGenProperty> columns) throws IOException {
+        String simpleName = bean.getSimpleName();
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Maps rows to beans, indexes of columns are resolved by labels when ResultSet changes.");
+        cw.println(" * Method mapRow is compatible with RowMapper of Spring JDBC, mapper is not thread-safe.");
+        cw.println(" */");
+        cw.startBlock(access + "static final class RowMapper {");
+        cw.println("private java.sql.ResultSet resultSet_;");
+        for (DGenProperty property : columns)
+            cw.println("private int " + property.getName() + "_;");
+
+        cw.println("");
+        cw.startBlock("private void resolve(java.sql.ResultSet rs_) throws java.sql.SQLException {");
+        for (DGenProperty property : columns)
+            cw.println(property.getName() + "_ = 0;");
+        cw.println("java.sql.ResultSetMetaData meta_ = rs_.getMetaData();");
+        cw.startBlock("for (int i_ = meta_.getColumnCount(); i_ > 0; i_--) {");
+        cw.startBlock("switch (meta_.getColumnLabel(i_).toLowerCase(java.util.Locale.ROOT)) {");
+        for (DGenProperty property : columns) {
+            for (String label : columnLabels(property))
+                cw.println("case \"" + label + "\":");
+            cw.println("    " + property.getName() + "_ = i_;");
+            cw.println("    break;");
+        }
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.println("resultSet_ = rs_;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + simpleName + " mapRow(java.sql.ResultSet rs_, int rowNum) throws java.sql.SQLException {");
+        cw.println("if (rs_ != resultSet_) resolve(rs_);");
+        for (DGenProperty property : columns)
+            printGet(cw, property, property.getName() + "_");
+        bean.printConstruction(cw, columns);
+        cw.println("return bean_;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
@@ -0,0 +1,569 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of reflection-free JSON writer and streaming reader for bean marked with {@link org.docero.dgen.DGenJson}.
+ * <p>Transient properties and properties marked with JsonIgnore are skipped,
+ * name of property in JSON may be changed by JsonProperty annotation.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenJsonCodec implements DGenCompanion {
+    static final String JSON_IGNORE = "com.fasterxml.jackson.annotation.JsonIgnore";
+    static final String JSON_PROPERTY = "com.fasterxml.jackson.annotation.JsonProperty";
+
+    private final DGenClass bean;
+    private final String className;
+    private int variables;
+
+    DGenJsonCodec(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Json";
+    }
+
+    static boolean isSupported(DGenType type) {
+        switch (type.getKind()) {
+            case LIST:
+                return isSupported(type.getArgument(0));
+            case MAP:
+                return type.getArgument(0).isScalar() && type.getArgument(0).getKind() != DGenType.Kind.BOOLEAN &&
+                        isSupported(type.getArgument(1));
+            case OTHER:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    static boolean isIgnored(DGenProperty property) {
+        if (property.isTransient()) return true;
+        Object ignore = property.getAnnotationValue(JSON_IGNORE, "value");
+        return property.hasAnnotation(JSON_IGNORE) && (ignore == null || (Boolean) ignore);
+    }
+
+    static String jsonName(DGenProperty property) {
+        Object name = property.getAnnotationValue(JSON_PROPERTY, "value");
+        return name == null || name.toString().isEmpty() ? property.getName() : name.toString();
+    }
+
+    private List<DGenProperty> jsonProperties() {
+        return bean.getProperties().stream()
+                .filter(p -> !isIgnored(p))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : jsonProperties())
+            if (!isSupported(property.getGenType())) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                        "type " + property.getTypeName() + " is not supported by JSON codec, mark property with @JsonIgnore",
+                        property.getElement());
+                valid = false;
+            }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println("private " + className + "() {}");
+
+            cw.println("");
+            cw.startBlock(access + "static java.lang.String toJson(" + simpleName + " bean) {");
+            cw.println("java.lang.StringBuilder out = new java.lang.StringBuilder();");
+            cw.startBlock("try {");
+            cw.println("write(bean, out);");
+            cw.endBlock("} catch (java.io.IOException e) {");
+            cw.println("    throw new java.lang.IllegalStateException(e);");
+            cw.println("}");
+            cw.println("return out.toString();");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "static " + simpleName + " fromJson(java.lang.String json) {");
+            cw.startBlock("try {");
+            cw.println("return read(new java.io.StringReader(json));");
+            cw.endBlock("} catch (java.io.IOException e) {");
+            cw.println("    throw new java.lang.IllegalArgumentException(e.getMessage(), e);");
+            cw.println("}");
+            cw.endBlock("}");
+            /*
+                Writer, property names are escaped on generation stage
+            */
+            cw.println("");
+            cw.startBlock(access + "static void write(" + simpleName +
+                    " bean_, java.lang.Appendable out_) throws java.io.IOException {");
+            cw.startBlock("if (bean_ == null) {");
+            cw.println("out_.append(\"null\");");
+            cw.println("return;");
+            cw.endBlock("}");
+            String separator = "{";
+            for (DGenProperty property : jsonProperties()) {
+                cw.println("out_.append(" + javaString(separator + jsonString(jsonName(property)) + ":") + ");");
+                printWrite(cw, property.getGenType(), "bean_.get" + DGenProcessor.proper(property.getName()) + "()");
+                separator = ",";
+            }
+            cw.println("out_.append(" + (separator.equals("{") ? "\"{}\"" : "'}'") + ");");
+            cw.endBlock("}");
+            /*
+                Streaming reader
+            */
+            cw.println("");
+            cw.startBlock(access + "static " + simpleName + " read(java.io.Reader in) throws java.io.IOException {");
+            cw.println("return read(new Parser(in));");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("static " + simpleName + " read(Parser p_) throws java.io.IOException {");
+            cw.println("if (p_.readNull()) return null;");
+            for (DGenProperty property : DGenCodec.serializedProperties(bean))
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = " +
+                        property.getGenType().getDefaultValue() + ";");
+            cw.println("p_.expect('{');");
+            cw.startBlock("for (boolean first_ = true; p_.hasNext('}', first_); first_ = false) {");
+            cw.println("java.lang.String name_ = p_.readString();");
+            cw.println("p_.expect(':');");
+            cw.startBlock("switch (name_) {");
+            for (DGenProperty property : jsonProperties()) {
+                cw.startBlock("case " + javaString(jsonName(property)) + ": {");
+                String value = printRead(cw, property.getGenType());
+                cw.println("v_" + property.getName() + " = " + value + ";");
+                cw.println("break;");
+                cw.endBlock("}");
+            }
+            cw.println("default:");
+            cw.println("    p_.skipValue();");
+            cw.endBlock("}");
+            cw.endBlock("}");
+            bean.printConstruction(cw, DGenCodec.serializedProperties(bean));
+            cw.println("return bean_;");
+            cw.endBlock("}");
+
+            printHelpers(cw);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printWrite(JavaClassWriter cw, DGenType type, String value) throws IOException {
+        int id = variables++;
+        if (type.isPrimitive()) {
+            cw.println(writeScalar(type, value));
+        } else if (type.getKind() == DGenType.Kind.LIST) {
+            cw.println(type + " l" + id + "_ = " + value + ";");
+            cw.println("if (l" + id + "_ == null) out_.append(\"null\");");
+            cw.startBlock("else {");
+            cw.println("out_.append('[');");
+            cw.println("boolean first" + id + "_ = true;");
+            cw.startBlock("for (" + type.getArgument(0) + " e" + id + "_ : l" + id + "_) {");
+            cw.println("if (!first" + id + "_) out_.append(',');");
+            cw.println("first" + id + "_ = false;");
+            printWrite(cw, type.getArgument(0), "e" + id + "_");
+            cw.endBlock("}");
+            cw.println("out_.append(']');");
+            cw.endBlock("}");
+        } else if (type.getKind() == DGenType.Kind.MAP) {
+            cw.println(type + " m" + id + "_ = " + value + ";");
+            cw.println("if (m" + id + "_ == null) out_.append(\"null\");");
+            cw.startBlock("else {");
+            cw.println("out_.append('{');");
+            cw.println("boolean first" + id + "_ = true;");
+            cw.startBlock("for (java.util.Map.Entry<" + type.getArgument(0) + ", " + type.getArgument(1) +
+                    "> e" + id + "_ : m" + id + "_.entrySet()) {");
+            cw.println("if (!first" + id + "_) out_.append(',');");
+            cw.println("first" + id + "_ = false;");
+            cw.println("writeString(out_, " + (type.getArgument(0).getKind() == DGenType.Kind.ENUM ?
+                    "e" + id + "_.getKey().name()" : "java.lang.String.valueOf(e" + id + "_.getKey())") + ");");
+            cw.println("out_.append(':');");
+            printWrite(cw, type.getArgument(1), "e" + id + "_.getValue()");
+            cw.endBlock("}");
+            cw.println("out_.append('}');");
+            cw.endBlock("}");
+        } else {
+            cw.println(type + " v" + id + "_ = " + value + ";");
+            cw.println("if (v" + id + "_ == null) out_.append(\"null\");");
+            cw.println("else " + writeScalar(type, "v" + id + "_"));
+        }
+    }
+
+    private static String writeScalar(DGenType type, String value) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "out_.append(" + value + " ? \"true\" : \"false\");";
+            case CHAR:
+                return "writeString(out_, java.lang.String.valueOf(" + value + "));";
+            case FLOAT:
+                return "writeFloat(out_, " + value + ");";
+            case DOUBLE:
+                return "writeDouble(out_, " + value + ");";
+            case STRING:
+                return "writeString(out_, " + value + ");";
+            case ENUM:
+                return "writeString(out_, " + value + ".name());";
+            default:
+                return "writeLong(out_, " + value + ");";
+        }
+    }
+
+    /**
+     * Prints statements needed for reading value of given type
+     *
+     * @return expression with read value
+     */
+    private String printRead(JavaClassWriter cw, DGenType type) throws IOException {
+        int id = variables++;
+        switch (type.getKind()) {
+            case LIST: {
+                cw.println(type + " l" + id + "_ = null;");
+                cw.startBlock("if (!p_.readNull()) {");
+                cw.println("l" + id + "_ = new java.util.ArrayList<>();");
+                cw.println("p_.expect('[');");
+                cw.startBlock("for (boolean f" + id + "_ = true; p_.hasNext(']', f" + id + "_); f" + id + "_ = false) {");
+                String element = printRead(cw, type.getArgument(0));
+                cw.println("l" + id + "_.add(" + element + ");");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                return "l" + id + "_";
+            }
+            case MAP: {
+                cw.println(type + " m" + id + "_ = null;");
+                cw.startBlock("if (!p_.readNull()) {");
+                cw.println("m" + id + "_ = new java.util.LinkedHashMap<>();");
+                cw.println("p_.expect('{');");
+                cw.startBlock("for (boolean f" + id + "_ = true; p_.hasNext('}', f" + id + "_); f" + id + "_ = false) {");
+                cw.println(type.getArgument(0) + " k" + id + "_ = " + keyOf(type.getArgument(0), "p_.readString()") + ";");
+                cw.println("p_.expect(':');");
+                String value = printRead(cw, type.getArgument(1));
+                cw.println("m" + id + "_.put(k" + id + "_, " + value + ");");
+                cw.endBlock("}");
+                cw.endBlock("}");
+                return "m" + id + "_";
+            }
+            default:
+                String read = readScalar(type);
+                return type.isPrimitive() ? read : "p_.readNull() ? null : " +
+                        (type.isBoxed() ? type.getBoxedName() + ".valueOf(" + read + ")" : read);
+        }
+    }
+
+    private static String readScalar(DGenType type) {
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return "p_.readBoolean()";
+            case BYTE:
+                return "(byte) p_.readLong(java.lang.Byte.MIN_VALUE, java.lang.Byte.MAX_VALUE)";
+            case SHORT:
+                return "(short) p_.readLong(java.lang.Short.MIN_VALUE, java.lang.Short.MAX_VALUE)";
+            case CHAR:
+                return "p_.readChar()";
+            case INT:
+                return "(int) p_.readLong(java.lang.Integer.MIN_VALUE, java.lang.Integer.MAX_VALUE)";
+            case LONG:
+                return "p_.readLong(java.lang.Long.MIN_VALUE, java.lang.Long.MAX_VALUE)";
+            case FLOAT:
+                return "p_.readFloat()";
+            case DOUBLE:
+                return "p_.readDouble()";
+            case ENUM:
+                return type + ".valueOf(p_.readString())";
+            default:
+                return "p_.readString()";
+        }
+    }
+
+    private static String keyOf(DGenType type, String value) {
+        switch (type.getKind()) {
+            case STRING:
+                return value;
+            case CHAR:
+                return value + ".charAt(0)";
+            case ENUM:
+                return type + ".valueOf(" + value + ")";
+            default:
+                return type.getBoxedName() + ".valueOf(" + value + ")";
+        }
+    }
+
+    static String jsonString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    static String javaString(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20 || c > 0x7e) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        return sb.append('"').toString();
+    }
+
+    private void printHelpers(JavaClassWriter cw) throws IOException {
+        cw.println("");
+        cw.startBlock("static void writeLong(java.lang.Appendable out, long v) throws java.io.IOException {");
+        cw.println("if (out instanceof java.lang.StringBuilder) ((java.lang.StringBuilder) out).append(v);");
+        cw.println("else out.append(java.lang.Long.toString(v));");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static void writeDouble(java.lang.Appendable out, double v) throws java.io.IOException {");
+        cw.println("if (java.lang.Double.isNaN(v) || java.lang.Double.isInfinite(v)) out.append('\"').append(java.lang.Double.toString(v)).append('\"');");
+        cw.println("else if (out instanceof java.lang.StringBuilder) ((java.lang.StringBuilder) out).append(v);");
+        cw.println("else out.append(java.lang.Double.toString(v));");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static void writeFloat(java.lang.Appendable out, float v) throws java.io.IOException {");
+        cw.println("if (java.lang.Float.isNaN(v) || java.lang.Float.isInfinite(v)) out.append('\"').append(java.lang.Float.toString(v)).append('\"');");
+        cw.println("else if (out instanceof java.lang.StringBuilder) ((java.lang.StringBuilder) out).append(v);");
+        cw.println("else out.append(java.lang.Float.toString(v));");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("static void writeString(java.lang.Appendable out, java.lang.String s) throws java.io.IOException {");
+        cw.startBlock("if (s == null) {");
+        cw.println("out.append(\"null\");");
+        cw.println("return;");
+        cw.endBlock("}");
+        cw.println("out.append('\"');");
+        cw.println("int start = 0, n = s.length();");
+        cw.startBlock("for (int i = 0; i < n; i++) {");
+        cw.println("char c = s.charAt(i);");
+        cw.println("if (c >= 0x20 && c != '\"' && c != '\\\\') continue;");
+        cw.println("out.append(s, start, i);");
+        cw.println("start = i + 1;");
+        cw.println("if (c == '\"') out.append(\"\\\\\\\"\");");
+        cw.println("else if (c == '\\\\') out.append(\"\\\\\\\\\");");
+        cw.println("else if (c == '\\n') out.append(\"\\\\n\");");
+        cw.println("else if (c == '\\r') out.append(\"\\\\r\");");
+        cw.println("else if (c == '\\t') out.append(\"\\\\t\");");
+        cw.println("else out.append(\"\\\\u00\").append(HEX[c >> 4]).append(HEX[c & 0xF]);");
+        cw.endBlock("}");
+        cw.println("out.append(s, start, n).append('\"');");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("private static final char[] HEX = \"0123456789abcdef\".toCharArray();");
+        printParser(cw);
+    }
+
+    /**
+     * Prints minimal streaming JSON parser with one character lookahead
+     */
+    private static void printParser(JavaClassWriter cw) throws IOException {
+        cw.println("");
+        cw.startBlock("static final class Parser {");
+        cw.println("private final java.io.Reader in;");
+        cw.println("private final char[] buf = new char[1024];");
+        cw.println("private final java.lang.StringBuilder sb = new java.lang.StringBuilder();");
+        cw.println("private int pos, limit;");
+        cw.println("private long offset;");
+
+        cw.println("");
+        cw.startBlock("Parser(java.io.Reader in) {");
+        cw.println("this.in = in;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private int read() throws java.io.IOException {");
+        cw.startBlock("if (pos == limit) {");
+        cw.println("offset += limit;");
+        cw.println("pos = 0;");
+        cw.println("limit = Math.max(in.read(buf), 0);");
+        cw.println("if (limit == 0) return -1;");
+        cw.endBlock("}");
+        cw.println("return buf[pos++];");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("int peek() throws java.io.IOException {");
+        cw.startBlock("for (; ; ) {");
+        cw.println("int c = read();");
+        cw.println("if (c == ' ' || c == '\\n' || c == '\\r' || c == '\\t') continue;");
+        cw.println("if (c >= 0) pos--;");
+        cw.println("return c;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("java.io.IOException error(java.lang.String expected) {");
+        cw.println("return new java.io.IOException(\"JSON: \" + expected + \" expected at position \" + (offset + pos));");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("void expect(char c) throws java.io.IOException {");
+        cw.println("if (peek() != c) throw error(\"'\" + c + \"'\");");
+        cw.println("pos++;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("boolean hasNext(char end, boolean first) throws java.io.IOException {");
+        cw.startBlock("if (peek() == end) {");
+        cw.println("pos++;");
+        cw.println("return false;");
+        cw.endBlock("}");
+        cw.println("if (!first) expect(',');");
+        cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void literal(java.lang.String s) throws java.io.IOException {");
+        cw.println("for (int i = 0; i < s.length(); i++)");
+        cw.println("    if (read() != s.charAt(i)) throw error(s);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("boolean readNull() throws java.io.IOException {");
+        cw.println("if (peek() != 'n') return false;");
+        cw.println("literal(\"null\");");
+        cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("boolean readBoolean() throws java.io.IOException {");
+        cw.println("int c = peek();");
+        cw.println("literal(c == 't' ? \"true\" : \"false\");");
+        cw.println("return c == 't';");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("long readLong(long min, long max) throws java.io.IOException {");
+        cw.println("boolean negative = peek() == '-';");
+        cw.println("if (negative) pos++;");
+        cw.println("long v = 0;");
+        cw.println("int digits = 0, c;");
+        cw.startBlock("while ((c = read()) >= '0' && c <= '9') {");
+        cw.println("if (v < (Long.MIN_VALUE + (c - '0')) / 10) throw error(\"number in range\");");
+        cw.println("v = v * 10 - (c - '0');");
+        cw.println("digits++;");
+        cw.endBlock("}");
+        cw.println("if (c >= 0) pos--;");
+        cw.println("if (digits == 0 || c == '.' || c == 'e' || c == 'E') throw error(\"integer number\");");
+        cw.println("if (!negative) v = -v;");
+        cw.println("if (v < min || v > max || (!negative && v < 0)) throw error(\"number in range\");");
+        cw.println("return v;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("double readDouble() throws java.io.IOException {");
+        cw.println("return java.lang.Double.parseDouble(readNumber());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("float readFloat() throws java.io.IOException {");
+        cw.println("return java.lang.Float.parseFloat(readNumber());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private java.lang.String readNumber() throws java.io.IOException {");
+        cw.println("if (peek() == '\"') return readString();");
+        cw.println("sb.setLength(0);");
+        cw.println("int c;");
+        cw.println("while ((c = read()) >= 0 && (c >= '0' && c <= '9' || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E'))");
+        cw.println("    sb.append((char) c);");
+        cw.println("if (c >= 0) pos--;");
+        cw.println("if (sb.length() == 0) throw error(\"number\");");
+        cw.println("return sb.toString();");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("char readChar() throws java.io.IOException {");
+        cw.println("java.lang.String s = readString();");
+        cw.println("if (s == null || s.length() != 1) throw error(\"single character string\");");
+        cw.println("return s.charAt(0);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private int readHex() throws java.io.IOException {");
+        cw.println("int c = 0;");
+        cw.startBlock("for (int i = 0; i < 4; i++) {");
+        cw.println("int d = Character.digit(read(), 16);");
+        cw.println("if (d < 0) throw error(\"hex digit\");");
+        cw.println("c = c << 4 | d;");
+        cw.endBlock("}");
+        cw.println("return c;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("java.lang.String readString() throws java.io.IOException {");
+        cw.println("if (readNull()) return null;");
+        cw.println("expect('\"');");
+        cw.println("sb.setLength(0);");
+        cw.startBlock("for (; ; ) {");
+        cw.println("int c = read();");
+        cw.println("if (c < 0) throw error(\"'\\\"'\");");
+        cw.println("if (c == '\"') return sb.toString();");
+        cw.startBlock("if (c == '\\\\') {");
+        cw.println("c = read();");
+        cw.startBlock("switch (c) {");
+        cw.println("case 'n':");
+        cw.println("    c = '\\n';");
+        cw.println("    break;");
+        cw.println("case 'r':");
+        cw.println("    c = '\\r';");
+        cw.println("    break;");
+        cw.println("case 't':");
+        cw.println("    c = '\\t';");
+        cw.println("    break;");
+        cw.println("case 'b':");
+        cw.println("    c = '\\b';");
+        cw.println("    break;");
+        cw.println("case 'f':");
+        cw.println("    c = '\\f';");
+        cw.println("    break;");
+        cw.println("case 'u':");
+        cw.println("    c = readHex();");
+        cw.println("    break;");
+        cw.println("case '\"':");
+        cw.println("case '\\\\':");
+        cw.println("case '/':");
+        cw.println("    break;");
+        cw.println("default:");
+        cw.println("    throw error(\"escape sequence\");");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.println("sb.append((char) c);");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("void skipValue() throws java.io.IOException {");
+        cw.println("int c = peek();");
+        cw.startBlock("if (c == '{' || c == '[') {");
+        cw.println("char end = c == '{' ? '}' : ']';");
+        cw.println("pos++;");
+        cw.startBlock("for (boolean first = true; hasNext(end, first); first = false) {");
+        cw.startBlock("if (end == '}') {");
+        cw.println("readString();");
+        cw.println("expect(':');");
+        cw.endBlock("}");
+        cw.println("skipValue();");
+        cw.endBlock("}");
+        cw.endBlock("} else if (c == '\"') readString();");
+        cw.println("else if (c == 't' || c == 'f') readBoolean();");
+        cw.println("else if (!readNull()) readDouble();");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
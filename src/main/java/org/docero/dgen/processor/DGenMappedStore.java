@@ -0,0 +1,370 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenMaxLength;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of file store for bean marked with {@link org.docero.dgen.DGenMapped}.
+ * <p>Records have fixed width and are placed one after another in memory mapped file after 16 bytes header
+ * (magic number, hash of layout and count of records). Record is a sequence of non transient properties
+ * in little-endian byte order:</p>
+ * <ul>
+ * <li>primitives are written as is;</li>
+ * <li>wrappers are prefixed by byte tag: 0 for null, 1 for value, Boolean is single byte 0, 1 or 2;</li>
+ * <li>enums are written as int ordinal (-1 for null);</li>
+ * <li>strings must be marked with {@link DGenMaxLength}, they are written as short length of UTF-8 bytes
+ * (-1 for null) and bytes padded to maximal length.</li>
+ * </ul>
+ * <p>Records are read to new bean or through reusable cursor with the same getters as bean.
+ * File is remapped with larger size when capacity is exhausted, its size is limited by 2GB.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenMappedStore implements DGenCompanion {
+    private static final int HEADER = 16;
+    private final DGenClass bean;
+    private final String className;
+    private final Map<DGenProperty, Integer> offsets = new LinkedHashMap<>();
+    private final Map<String, String> enumValues = new LinkedHashMap<>();
+    private final StringBuilder layout = new StringBuilder();
+    private int recordSize;
+    private int variables;
+
+    DGenMappedStore(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "MappedStore";
+    }
+
+    private static int maxLength(DGenProperty property) {
+        Object value = property.getAnnotationValue(DGenMaxLength.class.getName(), "value");
+        return value == null ? -1 : (Integer) value;
+    }
+
+    /**
+     * @return width of property in record, -1 if type can not be stored with fixed width
+     */
+    private static int width(DGenProperty property) {
+        DGenType type = property.getGenType();
+        if (type.isPrimitive()) return DGenCodec.fixedSize(type);
+        if (type.isBoxed()) return type.getKind() == DGenType.Kind.BOOLEAN ? 1 : 1 + DGenCodec.fixedSize(type);
+        switch (type.getKind()) {
+            case ENUM:
+                return 4;
+            case STRING:
+                int max = maxLength(property);
+                return max > 0 && max <= Short.MAX_VALUE ? 2 + max : -1;
+            default:
+                return -1;
+        }
+    }
+
+    static List<DGenProperty> storedProperties(DGenClass bean) {
+        return bean.getProperties().stream()
+                .filter(p -> !p.isTransient())
+                .collect(Collectors.toList());
+    }
+
+    private String enumValues(DGenType type) {
+        return enumValues.computeIfAbsent(type.getName(), k -> "VALUES" + enumValues.size() + "_");
+    }
+
+    /**
+     * @return expression with value of property in record started at 'offset_'
+     */
+    private String value(DGenProperty property) {
+        DGenType type = property.getGenType();
+        String at = "offset_ + " + offsets.get(property);
+        if (type.isPrimitive()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN) return "buffer_.get(" + at + ") != 0";
+            return "buffer_." + DGenCodec.getMethod(type) + "(" + at + ")";
+        } else if (type.isBoxed()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN) return "getBoolean(" + at + ")";
+            return "buffer_.get(" + at + ") == 0 ? null : " + type.getBoxedName() + ".valueOf(buffer_." +
+                    DGenCodec.getMethod(type) + "(" + at + " + 1))";
+        } else if (type.getKind() == DGenType.Kind.ENUM)
+            return "getEnum(" + enumValues(type) + ", buffer_.getInt(" + at + "))";
+        return "getString(" + at + ")";
+    }
+
+    private void printPut(JavaClassWriter cw, DGenProperty property, String value) throws IOException {
+        DGenType type = property.getGenType();
+        String at = "offset_ + " + offsets.get(property);
+        int id = variables++;
+        if (type.isPrimitive()) {
+            if (type.getKind() == DGenType.Kind.BOOLEAN)
+                cw.println("buffer_.put(" + at + ", " + value + " ? (byte) 1 : (byte) 0);");
+            else
+                cw.println("buffer_." + DGenCodec.putMethod(type) + "(" + at + ", " + value + ");");
+        } else if (type.isBoxed()) {
+            cw.println(type.getName() + " v" + id + "_ = " + value + ";");
+            if (type.getKind() == DGenType.Kind.BOOLEAN)
+                cw.println("buffer_.put(" + at + ", v" + id + "_ == null ? (byte) 0 : v" + id +
+                        "_ ? (byte) 2 : (byte) 1);");
+            else {
+                cw.println("buffer_.put(" + at + ", v" + id + "_ == null ? (byte) 0 : (byte) 1);");
+                cw.println("if (v" + id + "_ != null) buffer_." + DGenCodec.putMethod(type) + "(" + at + " + 1, v" +
+                        id + "_);");
+            }
+        } else if (type.getKind() == DGenType.Kind.ENUM) {
+            cw.println(type.getName() + " v" + id + "_ = " + value + ";");
+            cw.println("buffer_.putInt(" + at + ", v" + id + "_ == null ? -1 : v" + id + "_.ordinal());");
+        } else
+            cw.println("putString(" + at + ", " + value + ", " + maxLength(property) + ", \"" +
+                    property.getName() + "\");");
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : storedProperties(bean)) {
+            int width = width(property);
+            if (width < 0) {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, property.getGenType().getKind() ==
+                                DGenType.Kind.STRING ?
+                                "string stored in mapped file must be marked with @DGenMaxLength from 1 to 32767" :
+                                "type " + property.getTypeName() + " is not supported by mapped store, mark property as transient",
+                        property.getElement());
+                valid = false;
+                continue;
+            }
+            offsets.put(property, recordSize);
+            recordSize += width;
+            layout.append(property.getName()).append(':').append(property.getTypeName()).append(':')
+                    .append(width).append(';');
+        }
+        if (valid && recordSize == 0) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "bean stored in mapped file must have not transient properties", bean.getPrototype());
+            valid = false;
+        }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        List<DGenProperty> stored = storedProperties(bean);
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " implements java.io.Closeable {");
+            cw.println(access + "static final int RECORD_SIZE = " + recordSize + ";");
+            cw.println("private static final int HEADER_ = " + HEADER + ";");
+            cw.println("private static final int MAGIC_ = 0x44474d53;");
+            cw.println("private static final int LAYOUT_ = " + layout.toString().hashCode() + ";");
+            cw.println("private final java.nio.channels.FileChannel channel_;");
+            cw.println("private java.nio.MappedByteBuffer buffer_;");
+            cw.println("private int capacity_;");
+            cw.println("private int size_;");
+            /*
+                Open file, header of existing file is checked
+            */
+            cw.println("");
+            cw.startBlock("private " + className + "(java.nio.channels.FileChannel channel_) throws java.io.IOException {");
+            cw.println("this.channel_ = channel_;");
+            cw.println("long length_ = channel_.size();");
+            cw.startBlock("if (length_ == 0) {");
+            cw.println("map(HEADER_ + 16L * RECORD_SIZE);");
+            cw.println("buffer_.putInt(0, MAGIC_);");
+            cw.println("buffer_.putInt(4, LAYOUT_);");
+            cw.println("buffer_.putLong(8, 0L);");
+            cw.endBlock("}");
+            cw.startBlock("else {");
+            cw.println("if (length_ < HEADER_) throw new java.io.IOException(\"file is too short for " +
+                    simpleName + " store\");");
+            cw.println("map(length_);");
+            cw.println("if (buffer_.getInt(0) != MAGIC_ || buffer_.getInt(4) != LAYOUT_)");
+            cw.println("    throw new java.io.IOException(\"file is not a store of " + simpleName +
+                    " or has another layout\");");
+            cw.println("long size_ = buffer_.getLong(8);");
+            cw.println("if (size_ < 0 || size_ > capacity_) throw new java.io.IOException(\"file is truncated\");");
+            cw.println("this.size_ = (int) size_;");
+            cw.endBlock("}");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "static " + className + " open(java.nio.file.Path path) throws java.io.IOException {");
+            cw.println("java.nio.channels.FileChannel channel_ = java.nio.channels.FileChannel.open(path,");
+            cw.println("        java.nio.file.StandardOpenOption.CREATE, java.nio.file.StandardOpenOption.READ,");
+            cw.println("        java.nio.file.StandardOpenOption.WRITE);");
+            cw.startBlock("try {");
+            cw.println("return new " + className + "(channel_);");
+            cw.endBlock("}");
+            cw.startBlock("catch (java.io.IOException | RuntimeException e) {");
+            cw.println("channel_.close();");
+            cw.println("throw e;");
+            cw.endBlock("}");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private void map(long length_) throws java.io.IOException {");
+            cw.println("if (length_ > Integer.MAX_VALUE) throw new java.io.IOException(\"store of " + simpleName +
+                    " can not be larger than 2GB\");");
+            cw.println("buffer_ = channel_.map(java.nio.channels.FileChannel.MapMode.READ_WRITE, 0, length_);");
+            cw.println("buffer_.order(java.nio.ByteOrder.LITTLE_ENDIAN);");
+            cw.println("capacity_ = (int) ((length_ - HEADER_) / RECORD_SIZE);");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "int size() {");
+            cw.println("return size_;");
+            cw.endBlock("}");
+            /*
+                Append record copied from bean
+            */
+            cw.println("");
+            cw.startBlock(access + "int add(" + simpleName + " bean_) throws java.io.IOException {");
+            cw.println("if (size_ == capacity_) map(HEADER_ + (long) (capacity_ + (capacity_ >> 1) + 16) * RECORD_SIZE);");
+            cw.println("write(size_, bean_);");
+            cw.println("buffer_.putLong(8, size_ + 1);");
+            cw.println("return size_++;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "void set(int index_, " + simpleName + " bean_) {");
+            cw.println("if (index_ < 0 || index_ >= size_) throw new IndexOutOfBoundsException(String.valueOf(index_));");
+            cw.println("write(index_, bean_);");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private void write(int index_, " + simpleName + " bean_) {");
+            cw.println("int offset_ = HEADER_ + index_ * RECORD_SIZE;");
+            for (DGenProperty property : stored)
+                printPut(cw, property, "bean_.get" + DGenProcessor.proper(property.getName()) + "()");
+            cw.endBlock("}");
+            /*
+                Create bean from record
+            */
+            cw.println("");
+            cw.startBlock(access + simpleName + " get(int index_) {");
+            cw.println("if (index_ < 0 || index_ >= size_) throw new IndexOutOfBoundsException(String.valueOf(index_));");
+            cw.println("int offset_ = HEADER_ + index_ * RECORD_SIZE;");
+            for (DGenProperty property : stored)
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = " + value(property) + ";");
+            bean.printConstruction(cw, stored);
+            cw.println("return bean_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock(access + "Cursor cursor() {");
+            cw.println("return new Cursor();");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * Writes changes of mapped records to file");
+            cw.println(" */");
+            cw.startBlock(access + "void force() {");
+            cw.println("buffer_.force();");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("@Override");
+            cw.startBlock("public void close() throws java.io.IOException {");
+            cw.println("buffer_.force();");
+            cw.println("channel_.close();");
+            cw.endBlock("}");
+
+            printHelpers(cw);
+            printCursor(cw, access, stored);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printHelpers(JavaClassWriter cw) throws IOException {
+        boolean strings = false, booleans = false;
+        for (DGenProperty property : offsets.keySet()) {
+            DGenType type = property.getGenType();
+            strings |= type.getKind() == DGenType.Kind.STRING;
+            booleans |= type.isBoxed() && type.getKind() == DGenType.Kind.BOOLEAN;
+        }
+        if (booleans) {
+            cw.println("");
+            cw.startBlock("private java.lang.Boolean getBoolean(int offset_) {");
+            cw.println("byte tag_ = buffer_.get(offset_);");
+            cw.println("return tag_ == 0 ? null : tag_ == 2;");
+            cw.endBlock("}");
+        }
+        if (!enumValues.isEmpty()) {
+            cw.println("");
+            for (Map.Entry<String, String> e : enumValues.entrySet())
+                cw.println("private static final " + e.getKey() + "[] " + e.getValue() + " = " + e.getKey() + ".values();");
+            cw.println("");
+            cw.startBlock("private static <E> E getEnum(E[] values_, int ordinal_) {");
+            cw.println("return ordinal_ < 0 ? null : values_[ordinal_];");
+            cw.endBlock("}");
+        }
+        if (strings) {
+            cw.println("");
+            cw.startBlock("private void putString(int offset_, java.lang.String s_, int max_, java.lang.String name_) {");
+            cw.startBlock("if (s_ == null) {");
+            cw.println("buffer_.putShort(offset_, (short) -1);");
+            cw.println("return;");
+            cw.endBlock("}");
+            cw.println("byte[] bytes_ = s_.getBytes(java.nio.charset.StandardCharsets.UTF_8);");
+            cw.println("if (bytes_.length > max_) throw new IllegalArgumentException(name_ + \" is longer than \" + max_ + \" bytes\");");
+            cw.println("buffer_.putShort(offset_, (short) bytes_.length);");
+            cw.println("for (int i_ = 0; i_ < bytes_.length; i_++) buffer_.put(offset_ + 2 + i_, bytes_[i_]);");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.startBlock("private java.lang.String getString(int offset_) {");
+            cw.println("int length_ = buffer_.getShort(offset_);");
+            cw.println("if (length_ < 0) return null;");
+            cw.println("byte[] bytes_ = new byte[length_];");
+            cw.println("for (int i_ = 0; i_ < length_; i_++) bytes_[i_] = buffer_.get(offset_ + 2 + i_);");
+            cw.println("return new java.lang.String(bytes_, java.nio.charset.StandardCharsets.UTF_8);");
+            cw.endBlock("}");
+        }
+    }
+
+    private void printCursor(JavaClassWriter cw, String access, List<DGenProperty> stored) throws IOException {
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Flyweight view of record, reads values directly from mapped file");
+        cw.println(" */");
+        cw.startBlock(access + "final class Cursor {");
+        cw.println("private int index_ = -1;");
+        cw.println("private int offset_ = HEADER_ - RECORD_SIZE;");
+
+        cw.println("");
+        cw.startBlock(access + "Cursor at(int index_) {");
+        cw.println("if (index_ < 0 || index_ >= size_) throw new IndexOutOfBoundsException(String.valueOf(index_));");
+        cw.println("this.index_ = index_;");
+        cw.println("this.offset_ = HEADER_ + index_ * RECORD_SIZE;");
+        cw.println("return this;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "boolean next() {");
+        cw.println("if (index_ + 1 >= size_) return false;");
+        cw.println("index_++;");
+        cw.println("offset_ += RECORD_SIZE;");
+        cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "int index() {");
+        cw.println("return index_;");
+        cw.endBlock("}");
+
+        for (DGenProperty property : stored) {
+            cw.println("");
+            cw.println(access + property.getTypeName() + " get" + DGenProcessor.proper(property.getName()) +
+                    "() {return " + value(property) + ";}");
+        }
+        cw.endBlock("}");
+    }
+}
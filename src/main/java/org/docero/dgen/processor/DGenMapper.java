@@ -0,0 +1,187 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenBean;
+import org.docero.dgen.DGenInterface;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of mapper from bean or interface to targets listed in {@link org.docero.dgen.DGenMapping}.
+ * <p>Properties are matched by name and copied by direct getter and setter calls. Primitives and wrappers
+ * are converted with widening and null replaced by default value, other types must be assignable.
+ * Bean with unmodifiable properties is created by its constructor, interned bean is taken from its intern table.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenMapper implements DGenCompanion {
+    private final DGenClass source;
+    private final List<TypeElement> targets;
+    private final String className;
+    private final List<DGenClass> beans = new ArrayList<>();
+    private final List<Map<DGenProperty, String>> mappings = new ArrayList<>();
+
+    DGenMapper(DGenClass source, List<TypeElement> targets) {
+        this.source = source;
+        this.targets = targets;
+        this.className = source.getSimpleName() + "Mapper";
+    }
+
+    private static boolean isWidening(DGenType.Kind from, DGenType.Kind to) {
+        if (from == to) return true;
+        if (from == DGenType.Kind.BOOLEAN || to == DGenType.Kind.BOOLEAN) return false;
+        if (from == DGenType.Kind.BYTE && to == DGenType.Kind.SHORT) return true;
+        return to.ordinal() >= DGenType.Kind.INT.ordinal() && to.ordinal() > from.ordinal();
+    }
+
+    /**
+     * @return expression converting value of source property to type of target property,
+     * null if value can not be converted
+     */
+    private String convert(Types types, DGenProperty from, DGenProperty to, String value) {
+        DGenType s = from.getGenType();
+        DGenType t = to.getGenType();
+        if (s.getName().equals(t.getName())) return value;
+        if (s.getPrimitiveName() != null && t.getPrimitiveName() != null) {
+            if (!isWidening(s.getKind(), t.getKind())) return null;
+            String widened = s.getKind() == t.getKind() ? value : "(" + t.getPrimitiveName() + ") " + value;
+            if (s.isPrimitive()) return widened;
+            if (t.isPrimitive()) return value + " == null ? " + t.getDefaultValue() + " : " + widened;
+            return value + " == null ? null : " + t.getBoxedName() + ".valueOf(" + widened + ")";
+        }
+        return types.isAssignable(from.getType(), to.getType()) ? value : null;
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        Types types = processingEnv.getTypeUtils();
+        for (TypeElement element : targets) {
+            if (element.getAnnotation(DGenBean.class) != null) beans.add(DGenClass.readBean(element));
+            else if (element.getAnnotation(DGenInterface.class) != null) beans.add(DGenClass.readInterface(element));
+            else {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "mapping target " +
+                        element.getQualifiedName() + " is not a @DGenBean or @DGenInterface prototype", source.getPrototype());
+                return false;
+            }
+        }
+        /*
+            Check types of properties with the same names
+        */
+        boolean valid = true;
+        for (DGenClass target : beans) {
+            Map<DGenProperty, String> mapping = new LinkedHashMap<>();
+            for (DGenProperty to : target.getProperties()) {
+                DGenProperty from = source.getProperties().stream()
+                        .filter(p -> p.getName().equals(to.getName()))
+                        .findAny().orElse(null);
+                if (from == null) {
+                    if (to.isRequired() && !target.isInterface()) {
+                        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "required property " +
+                                to.getName() + " of " + target.getTargetClassName() + " is not mapped", source.getPrototype());
+                        valid = false;
+                    }
+                    continue;
+                }
+                String value = convert(types, from, to, "v_" + from.getName());
+                if (value == null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "property " + from.getName() +
+                            " of type " + from.getTypeName() + " can not be mapped to " + to.getTypeName() + " of " +
+                            target.getTargetClassName(), source.getPrototype());
+                    valid = false;
+                } else
+                    mapping.put(to, value);
+            }
+            mappings.add(mapping);
+        }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String access = source.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = source.openWriter(source.getPackageName() + "." + className)) {
+            cw.println("package " + source.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + source.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println("private " + className + "() {}");
+            for (int i = 0; i < beans.size(); i++) {
+                if (!beans.get(i).isInterface()) printMap(cw, access, beans.get(i), mappings.get(i));
+                printCopy(cw, access, beans.get(i), mappings.get(i));
+            }
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printValues(JavaClassWriter cw, Map<DGenProperty, String> mapping, List<DGenProperty> mapped)
+            throws IOException {
+        for (DGenProperty to : mapped) {
+            DGenProperty from = source.getProperties().stream()
+                    .filter(p -> p.getName().equals(to.getName()))
+                    .findAny().orElseThrow(IllegalStateException::new);
+            if (!mapping.get(to).equals("v_" + from.getName()))
+                cw.println(from.getTypeName() + " v_" + from.getName() + " = from.get" +
+                        DGenProcessor.proper(from.getName()) + "();");
+        }
+    }
+
+    /**
+     * Prints creation of target bean filled by mapped properties
+     */
+    private void printMap(JavaClassWriter cw, String access, DGenClass target, Map<DGenProperty, String> mapping)
+            throws IOException {
+        String targetName = target.getTargetClassName();
+        List<DGenProperty> mapped = new ArrayList<>(mapping.keySet());
+        cw.println("");
+        cw.startBlock(access + "static " + targetName + " to" + target.getSimpleName() + "(" +
+                source.getTargetClassName() + " from) {");
+        cw.println("if (from == null) return null;");
+        printValues(cw, mapping, mapped);
+        cw.println(targetName + " to = " + (target.isInterned() ? targetName + ".of(" : "new " + targetName + "(") +
+                target.getUnmodifiableProperties().stream()
+                        .map(p -> mapping.containsKey(p) ? read(p, mapping) : p.getGenType().getDefaultValue())
+                        .collect(Collectors.joining(", ")) + ");");
+        if (!target.isInterned())
+            for (DGenProperty property : mapped)
+                if (!target.isUnmodifiable(property))
+                    cw.println("to.set" + DGenProcessor.proper(property.getName()) + "(" + read(property, mapping) + ");");
+        cw.println("return to;");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Prints copying of mapped properties to modifiable properties of existing target
+     */
+    private void printCopy(JavaClassWriter cw, String access, DGenClass target, Map<DGenProperty, String> mapping)
+            throws IOException {
+        List<DGenProperty> mapped = new ArrayList<>();
+        for (DGenProperty property : mapping.keySet())
+            if (!target.isUnmodifiable(property)) mapped.add(property);
+        cw.println("");
+        cw.startBlock(access + "static void copy(" + source.getTargetClassName() + " from, " +
+                target.getTargetClassName() + " to) {");
+        printValues(cw, mapping, mapped);
+        for (DGenProperty property : mapped)
+            cw.println("to.set" + DGenProcessor.proper(property.getName()) + "(" + read(property, mapping) + ");");
+        cw.endBlock("}");
+    }
+
+    /**
+     * @return converted value, getter is called directly when value needs no conversion
+     */
+    private static String read(DGenProperty to, Map<DGenProperty, String> mapping) {
+        String value = mapping.get(to);
+        return value.equals("v_" + to.getName()) ? "from.get" + DGenProcessor.proper(to.getName()) + "()" : value;
+    }
+}
@@ -0,0 +1,239 @@
+package org.docero.dgen.processor;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Generator of immutable collections backed by primitive arrays, used for properties marked with
+ * {@code @DGenUnmodifiable(primitiveCollection = true)}.
+ * <p>List&lt;Integer&gt;, List&lt;Long&gt; and List&lt;Double&gt; are stored in IntList, LongList and DoubleList,
+ * Map&lt;Long, V&gt; in LongMap with open addressing index. Classes are nested in bean, so generated code
+ * does not depend on library at runtime. Values are copied on construction.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenPrimitiveCollections {
+    private DGenPrimitiveCollections() {
+    }
+
+    /**
+     * @return simple name of nested collection class for property type, or null if type is not supported
+     */
+    static String collectionClass(DGenType type) {
+        if (type.getKind() == DGenType.Kind.LIST) {
+            switch (type.getArgument(0).getKind()) {
+                case INT:
+                    return "IntList";
+                case LONG:
+                    return "LongList";
+                case DOUBLE:
+                    return "DoubleList";
+                default:
+                    return null;
+            }
+        } else if (type.getKind() == DGenType.Kind.MAP && type.getArgument(0).getKind() == DGenType.Kind.LONG)
+            return "LongMap";
+        return null;
+    }
+
+    /**
+     * @return type of field holding property value, it is declared type for not primitive collections
+     */
+    static String fieldType(DGenProperty property) {
+        String collection = property.isPrimitiveCollection() ? collectionClass(property.getGenType()) : null;
+        if (collection == null) return property.getTypeName();
+        return collection.equals("LongMap") ?
+                collection + "<" + property.getGenType().getArgument(1) + ">" : collection;
+    }
+
+    static void printClasses(JavaClassWriter cw, DGenClass bean) throws IOException {
+        Set<String> used = new TreeSet<>();
+        for (DGenProperty property : bean.getUnmodifiableProperties())
+            if (property.isPrimitiveCollection()) used.add(collectionClass(property.getGenType()));
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        if (used.contains("IntList")) printList(cw, access, "int", "java.lang.Integer", "Int");
+        if (used.contains("LongList")) printList(cw, access, "long", "java.lang.Long", "Long");
+        if (used.contains("DoubleList")) printList(cw, access, "double", "java.lang.Double", "Double");
+        if (used.contains("LongMap")) printLongMap(cw, access);
+    }
+
+    private static void printList(JavaClassWriter cw, String access, String primitive, String boxed, String name)
+            throws IOException {
+        String className = name + "List";
+        cw.println("");
+        cw.startBlock(access + "static final class " + className + " extends java.util.AbstractList<" + boxed +
+                "> implements java.util.RandomAccess {");
+        cw.println("private final " + primitive + "[] values;");
+
+        cw.println("");
+        cw.startBlock("private " + className + "(" + primitive + "[] values) {");
+        cw.println("this.values = values;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "static " + className + " of(" + primitive + "... values) {");
+        cw.println("return new " + className + "(values.clone());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "static " + className + " copyOf(java.util.Collection<? extends " + boxed + "> source) {");
+        cw.println("if (source == null) return null;");
+        cw.println("if (source instanceof " + className + ") return (" + className + ") source;");
+        cw.println(primitive + "[] values = new " + primitive + "[source.size()];");
+        cw.println("int i = 0;");
+        cw.println("for (" + boxed + " v : source) values[i++] = v;");
+        cw.println("return new " + className + "(values);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println(access + primitive + " get" + name + "(int index) {return values[index];}");
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public " + boxed + " get(int index) {return values[index];}");
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public int size() {return values.length;}");
+        cw.println("");
+        cw.println(access + primitive + "[] to" + name + "Array() {return values.clone();}");
+        cw.println("");
+        cw.println(access + "java.util.stream." + name + "Stream " + primitive +
+                "Stream() {return java.util.Arrays.stream(values);}");
+
+        cw.println("");
+        cw.startBlock(access + "void forEach" + name + "(java.util.function." + name + "Consumer action) {");
+        cw.println("for (" + primitive + " v : values) action.accept(v);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "int indexOf" + name + "(" + primitive + " value) {");
+        cw.println("for (int i = 0; i < values.length; i++)");
+        cw.println(primitive.equals("double") ?
+                "    if (Double.doubleToLongBits(values[i]) == Double.doubleToLongBits(value)) return i;" :
+                "    if (values[i] == value) return i;");
+        cw.println("return -1;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public int indexOf(Object o) {");
+        cw.println("return o instanceof " + boxed + " ? indexOf" + name + "((" + boxed + ") o) : -1;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public boolean contains(Object o) {return indexOf(o) >= 0;}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public boolean equals(Object o) {");
+        cw.println("if (o instanceof " + className + ") return java.util.Arrays.equals(values, ((" +
+                className + ") o).values);");
+        cw.println("return super.equals(o);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public int hashCode() {return java.util.Arrays.hashCode(values);}");
+        cw.endBlock("}");
+    }
+
+    private static void printLongMap(JavaClassWriter cw, String access) throws IOException {
+        String entry = "java.util.Map.Entry<java.lang.Long, V>";
+        cw.println("");
+        cw.println("@SuppressWarnings(\"unchecked\")");
+        cw.startBlock(access + "static final class LongMap<V> extends java.util.AbstractMap<java.lang.Long, V> {");
+        cw.println("private final long[] keys;");
+        cw.println("private final Object[] values;");
+        cw.println("// open addressing table of positions in keys, shifted by one: 0 is empty slot");
+        cw.println("private final int[] index;");
+
+        cw.println("");
+        cw.startBlock("private LongMap(long[] keys, Object[] values) {");
+        cw.println("this.keys = keys;");
+        cw.println("this.values = values;");
+        cw.println("this.index = new int[Integer.highestOneBit(Math.max(keys.length, 1) * 2 - 1) << 1];");
+        cw.println("for (int i = 0; i < keys.length; i++) index[slot(keys[i])] = i + 1;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "static <V> LongMap<V> copyOf(java.util.Map<? extends java.lang.Long, ? extends V> source) {");
+        cw.println("if (source == null) return null;");
+        cw.println("if (source instanceof LongMap) return (LongMap<V>) source;");
+        cw.println("long[] keys = new long[source.size()];");
+        cw.println("Object[] values = new Object[keys.length];");
+        cw.println("int i = 0;");
+        cw.startBlock("for (java.util.Map.Entry<? extends java.lang.Long, ? extends V> e : source.entrySet()) {");
+        cw.println("keys[i] = e.getKey();");
+        cw.println("values[i++] = e.getValue();");
+        cw.endBlock("}");
+        cw.println("return new LongMap<>(keys, values);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private int slot(long key) {");
+        cw.println("int mask = index.length - 1;");
+        cw.println("int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;");
+        cw.startBlock("for (; ; slot = (slot + 1) & mask) {");
+        cw.println("int position = index[slot];");
+        cw.println("if (position == 0 || keys[position - 1] == key) return slot;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "V get(long key) {");
+        cw.println("int position = index[slot(key)];");
+        cw.println("return position == 0 ? null : (V) values[position - 1];");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println(access + "boolean containsKey(long key) {return index[slot(key)] != 0;}");
+        cw.println("");
+        cw.println(access + "long keyAt(int i) {return keys[i];}");
+        cw.println("");
+        cw.println(access + "V valueAt(int i) {return (V) values[i];}");
+        cw.println("");
+        cw.println(access + "long[] keysToArray() {return keys.clone();}");
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public int size() {return keys.length;}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public V get(Object key) {");
+        cw.println("return key instanceof java.lang.Long ? get(((java.lang.Long) key).longValue()) : null;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public boolean containsKey(Object key) {");
+        cw.println("return key instanceof java.lang.Long && containsKey(((java.lang.Long) key).longValue());");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.util.Set<" + entry + "> entrySet() {");
+        cw.startBlock("return new java.util.AbstractSet<" + entry + ">() {");
+        cw.println("@Override");
+        cw.println("public int size() {return keys.length;}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.util.Iterator<" + entry + "> iterator() {");
+        cw.startBlock("return new java.util.Iterator<" + entry + ">() {");
+        cw.println("private int i;");
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public boolean hasNext() {return i < keys.length;}");
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public " + entry + " next() {");
+        cw.println("if (i >= keys.length) throw new java.util.NoSuchElementException();");
+        cw.println("i++;");
+        cw.println("return new java.util.AbstractMap.SimpleImmutableEntry<>(keys[i - 1], (V) values[i - 1]);");
+        cw.endBlock("}");
+        cw.endBlock("};");
+        cw.endBlock("}");
+        cw.endBlock("};");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
@@ -6,11 +6,12 @@ import org.docero.dgen.DGenInterface;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
-import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.TypeMirror;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -24,9 +25,15 @@ import java.util.Set;
         "org.docero.dgen.DGenInterface"
 })
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
+@SupportedOptions({DGenStats.OPTION, DGenIndex.OPTION})
 public class DGenProcessor extends AbstractProcessor {
+    private static final String GRADLE_ISOLATING = "org.gradle.annotation.processing.isolating";
+    private static final String GRADLE_AGGREGATING = "org.gradle.annotation.processing.aggregating";
     static TypeMirror listType;
     static TypeMirror mapType;
+    private DGenStats stats;
+    private DGenIndex index;
+    private int round;
 
     @Override
     public void init(ProcessingEnvironment environment) {
@@ -37,20 +44,62 @@ public class DGenProcessor extends AbstractProcessor {
         mapType = environment.getTypeUtils().erasure(
                 environment.getElementUtils().getTypeElement("java.util.Map").asType()
         );
+        stats = DGenStats.isEnabled(environment) ? new DGenStats() : null;
+        index = DGenIndex.of(environment);
     }
 
+    /**
+     * Processor is declared dynamic for Gradle: it is isolating, but aggregating while bean index is written
+     */
+    @Override
+    public Set<String> getSupportedOptions() {
+        Set<String> options = new HashSet<>(super.getSupportedOptions());
+        options.add(index != null ? GRADLE_AGGREGATING : GRADLE_ISOLATING);
+        return options;
+    }
+
+    /**
+     * Prototypes of round are read and validated on compiler thread, then rendered to memory in parallel
+     * and written on compiler thread in order of reading, so generated files do not depend on scheduling.
+     */
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        round++;
+        List<DGenClass> beans = new ArrayList<>();
+        for (Element e : roundEnv.getElementsAnnotatedWith(DGenInterface.class))
+            read(beans, (TypeElement) e, true);
 
-        Set<? extends Element> entities = roundEnv.getElementsAnnotatedWith(DGenInterface.class);
-        entities.forEach(e -> DGenClass.readInterface((TypeElement) e).generate(processingEnv));
+        for (Element e : roundEnv.getElementsAnnotatedWith(DGenBean.class))
+            read(beans, (TypeElement) e, false);
 
-        entities = roundEnv.getElementsAnnotatedWith(DGenBean.class);
-        entities.forEach(e -> DGenClass.readBean((TypeElement) e).generate(processingEnv));
+        beans.parallelStream().forEach(this::render);
+        for (DGenClass bean : beans) {
+            bean.write(processingEnv);
+            if (index != null) index.add(bean);
+        }
+        if (index != null) index.writeRegistry(processingEnv, beans);
 
+        if (roundEnv.processingOver()) {
+            if (index != null) index.write(processingEnv);
+            if (stats != null) stats.report(processingEnv);
+        }
         return false;
     }
 
+    private void read(List<DGenClass> beans, TypeElement prototype, boolean isInterface) {
+        long start = System.nanoTime();
+        DGenClass bean = isInterface ? DGenClass.readInterface(prototype) : DGenClass.readBean(prototype);
+        if (!bean.validate(processingEnv)) return;
+        if (stats != null) bean.setStatistics(stats.add(round, bean, System.nanoTime() - start));
+        beans.add(bean);
+    }
+
+    private void render(DGenClass bean) {
+        long start = System.nanoTime();
+        bean.render();
+        if (bean.getStatistics() != null) bean.getStatistics().renderNanos = System.nanoTime() - start;
+    }
+
     static void printDoc(JavaClassWriter cw, DGenDoc genDoc) throws IOException {
         if (genDoc != null) {
             cw.startBlock("/**");
@@ -59,10 +108,10 @@ public class DGenProcessor extends AbstractProcessor {
         }
     }
 
-    static void printAnnotations(JavaClassWriter cw, List<? extends AnnotationMirror> mirrors) throws IOException {
-        for (AnnotationMirror m : mirrors)
-            if (!m.getAnnotationType().toString().startsWith("org.docero.dgen.")) {
-                cw.println(m.toString());
+    static void printAnnotations(JavaClassWriter cw, List<DGenProperty.AnnotationSnapshot> annotations) {
+        for (DGenProperty.AnnotationSnapshot a : annotations)
+            if (!a.type.startsWith("org.docero.dgen.")) {
+                cw.println(a.text);
             }
     }
 
@@ -2,28 +2,37 @@ package org.docero.dgen.processor;
 
 import org.docero.dgen.DGenDoc;
 import org.docero.dgen.DGenFromBuilder;
+import org.docero.dgen.DGenLazy;
+import org.docero.dgen.DGenRequired;
 import org.docero.dgen.DGenUnmodifiable;
 
 import javax.lang.model.element.*;
 import javax.lang.model.type.TypeMirror;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @SuppressWarnings({"unused", "WeakerAccess"})
 public class DGenProperty {
     final private String name;
     final private TypeMirror type;
+    final private DGenType genType;
     final private Prototypes prototype;
-    private List<? extends AnnotationMirror> annotations;
-    private List<? extends AnnotationMirror> getterAnnotations;
-    private List<? extends AnnotationMirror> setterAnnotations;
+    private List<AnnotationSnapshot> annotations;
+    private List<AnnotationSnapshot> getterAnnotations;
+    private List<AnnotationSnapshot> setterAnnotations;
     private String modifiers;
     private boolean hasSetter;
     private boolean hasGetter;
     private boolean isBuilderProperty;
     private boolean isUnmodifiable;
     private boolean isUnmodifiableCollection;
+    private boolean isPrimitiveCollection;
+    private boolean isRequired;
+    private String lazyMethod;
     private DGenDoc genDoc;
     private DGenDoc setterDoc;
     private DGenDoc getterDoc;
@@ -39,6 +48,32 @@ public class DGenProperty {
 
     enum Prototypes {GETTER, SETTER, VARIABLE}
 
+    /**
+     * Annotation of prototype copied from compiler model: its source text and explicitly specified values
+     * of primitive, string or enum elements (enum value as name of constant). Rendering uses only snapshots,
+     * because compiler model is not accessed outside of its thread.
+     */
+    static final class AnnotationSnapshot {
+        final String type;
+        final String text;
+        final Map<String, Object> values = new LinkedHashMap<>();
+
+        AnnotationSnapshot(AnnotationMirror mirror) {
+            type = mirror.getAnnotationType().toString();
+            text = mirror.toString();
+            for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : mirror.getElementValues().entrySet()) {
+                Object value = e.getValue().getValue();
+                values.put(e.getKey().getSimpleName().toString(), value instanceof Number ||
+                        value instanceof Boolean || value instanceof Character || value instanceof String ?
+                        value : value.toString());
+            }
+        }
+
+        static List<AnnotationSnapshot> of(List<? extends AnnotationMirror> mirrors) {
+            return mirrors.stream().map(AnnotationSnapshot::new).collect(Collectors.toList());
+        }
+    }
+
     static DGenProperty from(VariableElement fieldElement) {
         return new DGenProperty(fieldElement,
                 fieldElement.getSimpleName().toString(),
@@ -73,15 +108,20 @@ public class DGenProperty {
         this.prototype = prototype;
         this.name = name;
         this.type = type;
+        this.genType = DGenType.of(type);
         isBuilderProperty = element.getAnnotation(DGenFromBuilder.class) != null;
+        isRequired = element.getAnnotation(DGenRequired.class) != null;
+        DGenLazy lazy = element.getAnnotation(DGenLazy.class);
+        if (lazy != null) lazyMethod = lazy.value().isEmpty() ? "compute" + DGenProcessor.proper(name) : lazy.value();
         DGenUnmodifiable dgenUnmodifiable = element.getAnnotation(DGenUnmodifiable.class);
         isUnmodifiable = dgenUnmodifiable != null;
         isUnmodifiableCollection = isUnmodifiable && dgenUnmodifiable.unmodifiableCollection();
+        isPrimitiveCollection = isUnmodifiable && dgenUnmodifiable.primitiveCollection();
         switch (prototype) {
             case GETTER:
-                getterAnnotations = element.getAnnotationMirrors().stream()
+                getterAnnotations = AnnotationSnapshot.of(element.getAnnotationMirrors().stream()
                         .filter(a -> !a.getAnnotationType().toString().startsWith("org.docero.gen."))
-                        .collect(Collectors.toList());
+                        .collect(Collectors.toList()));
                 setterAnnotations = new ArrayList<>();
                 annotations = new ArrayList<>();
                 modifiers = "";
@@ -92,9 +132,9 @@ public class DGenProperty {
                 hasGetter = true;
                 break;
             case SETTER:
-                setterAnnotations = element.getAnnotationMirrors().stream()
+                setterAnnotations = AnnotationSnapshot.of(element.getAnnotationMirrors().stream()
                         .filter(a -> !a.getAnnotationType().toString().startsWith("org.docero.gen."))
-                        .collect(Collectors.toList());
+                        .collect(Collectors.toList()));
                 getterAnnotations = new ArrayList<>();
                 annotations = new ArrayList<>();
                 modifiers = "";
@@ -105,9 +145,9 @@ public class DGenProperty {
                 hasGetter = false;
                 break;
             default:
-                annotations = element.getAnnotationMirrors().stream()
+                annotations = AnnotationSnapshot.of(element.getAnnotationMirrors().stream()
                         .filter(a -> !a.getAnnotationType().toString().startsWith("org.docero.gen."))
-                        .collect(Collectors.toList());
+                        .collect(Collectors.toList()));
                 getterAnnotations = new ArrayList<>();
                 setterAnnotations = new ArrayList<>();
                 if (!element.getModifiers().isEmpty()) {
@@ -133,8 +173,10 @@ public class DGenProperty {
     void join(DGenProperty property) {
         modifiers = modifiers.isEmpty() ? property.modifiers : modifiers;
         isBuilderProperty = isBuilderProperty || property.isBuilderProperty;
+        isRequired = isRequired || property.isRequired;
         isUnmodifiable = isUnmodifiable || property.isUnmodifiable;
         isUnmodifiableCollection = isUnmodifiableCollection || property.isUnmodifiableCollection;
+        isPrimitiveCollection = isPrimitiveCollection || property.isPrimitiveCollection;
         switch (property.prototype) {
             case GETTER:
                 hasGetter = true;
@@ -162,6 +204,10 @@ public class DGenProperty {
         return isBuilderProperty;
     }
 
+    public boolean isRequired() {
+        return isRequired;
+    }
+
     public boolean isUnmodifiable() {
         return isUnmodifiable;
     }
@@ -170,6 +216,17 @@ public class DGenProperty {
         return isUnmodifiableCollection;
     }
 
+    public boolean isPrimitiveCollection() {
+        return isPrimitiveCollection;
+    }
+
+    /**
+     * @return name of inherited method computing value of lazy property, null for other properties
+     */
+    public String getLazyMethod() {
+        return lazyMethod;
+    }
+
     public String getName() {
         return name;
     }
@@ -178,6 +235,17 @@ public class DGenProperty {
         return type;
     }
 
+    /**
+     * @return source text of property type, used by rendering instead of compiler model
+     */
+    public String getTypeName() {
+        return genType.getName();
+    }
+
+    public DGenType getGenType() {
+        return genType;
+    }
+
     public DGenDoc getGetterDoc() {
         return getterDoc == null ? genDoc : getterDoc;
     }
@@ -186,17 +254,16 @@ public class DGenProperty {
         return setterDoc == null ? genDoc : setterDoc;
     }
 
-    public List<? extends AnnotationMirror> getGetterAnnotations() {
+    public List<AnnotationSnapshot> getGetterAnnotations() {
         return concat(annotations, getterAnnotations);
     }
 
-    public List<? extends AnnotationMirror> getSetterAnnotations() {
+    public List<AnnotationSnapshot> getSetterAnnotations() {
         return concat(annotations, setterAnnotations);
     }
 
-    @SuppressWarnings("unchecked")
-    private List<? extends AnnotationMirror> concat(List<? extends AnnotationMirror> l1, List<? extends AnnotationMirror> l2) {
-        ArrayList al = new ArrayList(l1);
+    private List<AnnotationSnapshot> concat(List<AnnotationSnapshot> l1, List<AnnotationSnapshot> l2) {
+        List<AnnotationSnapshot> al = new ArrayList<>(l1);
         al.addAll(l2);
         return al;
     }
@@ -210,7 +277,36 @@ public class DGenProperty {
         return modifiers;
     }
 
+    public boolean isTransient() {
+        return modifiers.contains("transient");
+    }
+
     public Element getElement() {
         return element;
     }
+
+    /**
+     * @param annotationType qualified name of annotation type
+     * @return true if property prototype (field, getter or setter) is marked by annotation
+     */
+    public boolean hasAnnotation(String annotationType) {
+        return findAnnotation(annotationType) != null;
+    }
+
+    /**
+     * @param annotationType qualified name of annotation type
+     * @param name           name of annotation element
+     * @return value of annotation element if it is explicitly specified, null otherwise
+     */
+    public Object getAnnotationValue(String annotationType, String name) {
+        AnnotationSnapshot annotation = findAnnotation(annotationType);
+        return annotation == null ? null : annotation.values.get(name);
+    }
+
+    private AnnotationSnapshot findAnnotation(String annotationType) {
+        for (List<AnnotationSnapshot> mirrors : Arrays.asList(annotations, getterAnnotations, setterAnnotations))
+            for (AnnotationSnapshot m : mirrors)
+                if (m.type.equals(annotationType)) return m;
+        return null;
+    }
 }
@@ -0,0 +1,177 @@
+package org.docero.dgen.processor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generator of property table and index-based accessors for bean marked with {@link org.docero.dgen.DGenAccessors}.
+ * <p>Properties are numbered in order of declaration. Generic get(int) and set(int, Object) dispatch
+ * by switch to fields and setters, primitive variants avoid boxing for primitive properties.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenPropertyTable {
+    private DGenPropertyTable() {
+    }
+
+    static void printAccessors(JavaClassWriter cw, DGenClass bean) throws IOException {
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        List<DGenProperty> properties = new ArrayList<>(bean.getProperties());
+        /*
+            Static property table
+        */
+        cw.println("");
+        cw.startBlock("private static final String[] PROPERTY_NAMES_ = {");
+        for (DGenProperty property : properties)
+            cw.println("\"" + property.getName() + "\",");
+        cw.endBlock("};");
+        cw.startBlock("private static final Class<?>[] PROPERTY_TYPES_ = {");
+        for (DGenProperty property : properties)
+            cw.println(property.getGenType().getErasedName() + ".class,");
+        cw.endBlock("};");
+
+        cw.println("");
+        cw.println(access + "static int propertyCount() {return " + properties.size() + ";}");
+        cw.println(access + "static String propertyName(int index) {return PROPERTY_NAMES_[index];}");
+        cw.println(access + "static Class<?> propertyType(int index) {return PROPERTY_TYPES_[index];}");
+
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return index of property, or -1 if bean has no property with such name");
+        cw.println(" */");
+        cw.startBlock(access + "static int propertyIndex(String name) {");
+        cw.startBlock("switch (name) {");
+        for (int i = 0; i < properties.size(); i++)
+            cw.println("case \"" + properties.get(i).getName() + "\": return " + i + ";");
+        cw.println("default: return -1;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "static boolean isPropertyWritable(int index) {");
+        cw.println("if (index < 0 || index >= " + properties.size() + ") " + outOfBounds());
+        if (bean.isImmutable())
+            cw.println("return false;");
+        else {
+            cw.startBlock("switch (index) {");
+            for (int i = 0; i < properties.size(); i++)
+                if (!bean.isUnmodifiable(properties.get(i))) cw.println("case " + i + ": return true;");
+            cw.println("default: return false;");
+            cw.endBlock("}");
+        }
+        cw.endBlock("}");
+        /*
+            Generic accessors
+        */
+        cw.println("");
+        cw.startBlock(access + "Object get(int index) {");
+        cw.startBlock("switch (index) {");
+        for (int i = 0; i < properties.size(); i++)
+            cw.println("case " + i + ": return " + properties.get(i).getName() + ";");
+        cw.println("default: " + outOfBounds());
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@SuppressWarnings(\"unchecked\")");
+        cw.startBlock(access + "void set(int index, Object value) {");
+        cw.startBlock("switch (index) {");
+        for (int i = 0; i < properties.size(); i++) {
+            DGenProperty property = properties.get(i);
+            if (bean.isUnmodifiable(property))
+                cw.println("case " + i + ": throw new UnsupportedOperationException(\"property " +
+                        property.getName() + " is unmodifiable\");");
+            else
+                cw.println("case " + i + ": set" + DGenProcessor.proper(property.getName()) + "((" +
+                        property.getGenType().getBoxedName() + ") value); return;");
+        }
+        cw.println("default: " + outOfBounds());
+        cw.endBlock("}");
+        cw.endBlock("}");
+        /*
+            Primitive accessors for properties widened to primitive type, other properties are rejected
+        */
+        printGetter(cw, bean, properties, "long",
+                DGenType.Kind.BYTE, DGenType.Kind.SHORT, DGenType.Kind.CHAR, DGenType.Kind.INT, DGenType.Kind.LONG);
+        printGetter(cw, bean, properties, "int",
+                DGenType.Kind.BYTE, DGenType.Kind.SHORT, DGenType.Kind.CHAR, DGenType.Kind.INT);
+        printGetter(cw, bean, properties, "double",
+                DGenType.Kind.BYTE, DGenType.Kind.SHORT, DGenType.Kind.CHAR, DGenType.Kind.INT,
+                DGenType.Kind.LONG, DGenType.Kind.FLOAT, DGenType.Kind.DOUBLE);
+        printGetter(cw, bean, properties, "boolean", DGenType.Kind.BOOLEAN);
+
+        printSetter(cw, bean, properties, "long", DGenType.Kind.LONG, DGenType.Kind.FLOAT, DGenType.Kind.DOUBLE);
+        printSetter(cw, bean, properties, "int", DGenType.Kind.INT, DGenType.Kind.LONG,
+                DGenType.Kind.FLOAT, DGenType.Kind.DOUBLE);
+        printSetter(cw, bean, properties, "double", DGenType.Kind.DOUBLE);
+        printSetter(cw, bean, properties, "boolean", DGenType.Kind.BOOLEAN);
+    }
+
+    private static String outOfBounds() {
+        return "throw new IndexOutOfBoundsException(String.valueOf(index));";
+    }
+
+    private static boolean isOf(DGenProperty property, DGenType.Kind... kinds) {
+        for (DGenType.Kind kind : kinds)
+            if (property.getGenType().getKind() == kind) return true;
+        return false;
+    }
+
+    /**
+     * Primitive getter returns properties of given kinds, primitive or unboxed wrapper values are widened
+     * to primitive type. Other properties can not be read as primitive without loss of value.
+     */
+    private static void printGetter(JavaClassWriter cw, DGenClass bean, List<DGenProperty> properties,
+                                    String type, DGenType.Kind... kinds) throws IOException {
+        cw.println("");
+        cw.startBlock((bean.isPackagePrivate() ? "" : "public ") + type + " get" + DGenProcessor.proper(type) +
+                "(int index) {");
+        List<Integer> readable = new ArrayList<>();
+        for (int i = 0; i < properties.size(); i++)
+            if (isOf(properties.get(i), kinds)) readable.add(i);
+        if (!readable.isEmpty()) {
+            cw.startBlock("switch (index) {");
+            for (int i : readable)
+                cw.println("case " + i + ": return " + properties.get(i).getName() + ";");
+            cw.endBlock("}");
+        }
+        cw.println("if (index < 0 || index >= " + properties.size() + ") " + outOfBounds());
+        cw.println("throw new IllegalArgumentException(\"property \" + PROPERTY_NAMES_[index] + \" of type \" + " +
+                "PROPERTY_TYPES_[index].getName() + \" can not be read as " + type + "\");");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Primitive setter calls bean setter for mutable properties of given kinds, where value is assignable
+     * to primitive or is boxed to wrapper after widening. Other mutable properties can not be set from
+     * primitive, unmodifiable ones are passed to set(int, Object) which rejects them.
+     */
+    private static void printSetter(JavaClassWriter cw, DGenClass bean, List<DGenProperty> properties,
+                                    String type, DGenType.Kind... kinds) throws IOException {
+        cw.println("");
+        cw.startBlock((bean.isPackagePrivate() ? "" : "public ") + "void set" + DGenProcessor.proper(type) +
+                "(int index, " + type + " value) {");
+        if (bean.isImmutable()) {
+            cw.println("set(index, value);");
+            cw.endBlock("}");
+            return;
+        }
+        cw.startBlock("switch (index) {");
+        for (int i = 0; i < properties.size(); i++) {
+            DGenProperty property = properties.get(i);
+            if (bean.isUnmodifiable(property)) continue;
+            String setter = "set" + DGenProcessor.proper(property.getName());
+            if (!isOf(property, kinds))
+                cw.println("case " + i + ": throw new IllegalArgumentException(\"property " + property.getName() +
+                        " of type " + property.getTypeName() + " can not be set from " + type + "\");");
+            else if (property.getGenType().isPrimitive())
+                cw.println("case " + i + ": " + setter + "(value); return;");
+            else
+                cw.println("case " + i + ": " + setter + "(" + property.getGenType().getBoxedName() +
+                        ".valueOf(value)); return;");
+        }
+        cw.println("default: set(index, value);");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+}
@@ -0,0 +1,604 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenIndexed;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of in-memory repository for bean with properties marked with {@link DGenIndexed}.
+ * <p>Properties of byte, short, char, int and long types are indexed by open addressing table with long keys,
+ * so lookup does not box key and does not allocate, other properties are indexed by HashMap, null values
+ * are not indexed. Unique index maps key to bean, other indexes map key to bucket of beans.</p>
+ * <p>Bean gets reference to repository containing it, setters of indexed properties reindex bean before
+ * new value is assigned. Repository created by constructor is modified in place and is not safe for readers
+ * running concurrently with modifications. Repository created by copyOnWrite() publishes immutable snapshots
+ * of indexes: readers never lock, every modification copies tables of indexes, buckets are copied when they
+ * are changed.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenRepository implements DGenCompanion {
+    private final DGenClass bean;
+    private final String className;
+    private final List<DGenProperty> indexes = new ArrayList<>();
+
+    DGenRepository(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Repository";
+    }
+
+    static boolean isIndexed(DGenProperty property) {
+        return property.hasAnnotation(DGenIndexed.class.getName());
+    }
+
+    private static boolean isUnique(DGenProperty property) {
+        Object value = property.getAnnotationValue(DGenIndexed.class.getName(), "unique");
+        return value != null && (Boolean) value;
+    }
+
+    /**
+     * @return true if property is indexed by open addressing table with long keys
+     */
+    private static boolean isLongKey(DGenProperty property) {
+        DGenType type = property.getGenType();
+        if (!type.isPrimitive()) return false;
+        switch (type.getKind()) {
+            case BYTE:
+            case SHORT:
+            case CHAR:
+            case INT:
+            case LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static String indexField(DGenProperty property) {
+        return "by" + DGenProcessor.proper(property.getName());
+    }
+
+    private static String indexType(DGenProperty property) {
+        return isLongKey(property) ? "LongIndex_" :
+                "java.util.HashMap<" + property.getGenType().getBoxedName() + ", Object>";
+    }
+
+    private static String getter(DGenProperty property) {
+        return "get" + DGenProcessor.proper(property.getName()) + "()";
+    }
+
+    private static String equalsExpression(DGenProperty property, String a, String b) {
+        DGenType type = property.getGenType();
+        if (!type.isPrimitive()) return "java.util.Objects.equals(" + a + ", " + b + ")";
+        switch (type.getKind()) {
+            case FLOAT:
+                return "Float.compare(" + a + ", " + b + ") == 0";
+            case DOUBLE:
+                return "Double.compare(" + a + ", " + b + ") == 0";
+            default:
+                return a + " == " + b;
+        }
+    }
+
+    /**
+     * @return statement of setter reindexing bean before new value is assigned, empty if property is not indexed
+     */
+    static String reindexStatement(DGenClass bean, DGenProperty property) {
+        if (!isIndexed(property) || bean.isUnmodifiable(property)) return "";
+        return "if (repository_ != null) repository_.reindex" + DGenProcessor.proper(property.getName()) +
+                "_(this, " + property.getName() + ", val); ";
+    }
+
+    static void printBeanFields(JavaClassWriter cw, DGenClass bean) throws IOException {
+        cw.println("");
+        cw.println("// repository containing this bean and position of bean in it, maintained by repository");
+        cw.println("transient " + bean.getSimpleName() + "Repository repository_;");
+        cw.println("transient int repositorySlot_;");
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : bean.getProperties())
+            if (isIndexed(property)) {
+                if (bean.isConcurrent() && !bean.isUnmodifiable(property)) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "indexed property of " +
+                            "@DGenConcurrent type must be unmodifiable, atomic updates bypass index", property.getElement());
+                    valid = false;
+                }
+                indexes.add(property);
+            }
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.println("/**");
+            cw.println(" * Repository of " + simpleName + " indexed by " + indexes.stream()
+                    .map(p -> p.getName() + (isUnique(p) ? " (unique)" : ""))
+                    .collect(Collectors.joining(", ")) + ".");
+            cw.println(" * <p>Repository created by constructor must not be read while it is modified, repository created");
+            cw.println(" * by copyOnWrite() may be read by many threads without locking. Modifications are serialized,");
+            cw.println(" * setters of indexed properties of one bean must not be called concurrently.</p>");
+            cw.println(" */");
+            cw.startBlock(access + "final class " + className + " implements java.lang.Iterable<" + simpleName + "> {");
+            cw.println("private final boolean copyOnWrite_;");
+            cw.println("private volatile State_ state_ = new State_(16);");
+            cw.println("");
+            cw.startBlock(access + className + "() {");
+            cw.println("this(false);");
+            cw.endBlock("}");
+            cw.println("");
+            cw.startBlock("private " + className + "(boolean copyOnWrite_) {");
+            cw.println("this.copyOnWrite_ = copyOnWrite_;");
+            cw.endBlock("}");
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return repository for read-mostly use by many threads, every modification publishes copy of indexes");
+            cw.println(" */");
+            cw.startBlock(access + "static " + className + " copyOnWrite() {");
+            cw.println("return new " + className + "(true);");
+            cw.endBlock("}");
+            cw.println("");
+            cw.println("// state modified by writer, state of copy-on-write repository is copied and published on change");
+            cw.startBlock("private State_ writable_(int added_) {");
+            cw.println("return copyOnWrite_ ? new State_(state_, added_) : state_;");
+            cw.endBlock("}");
+
+            printReads(cw, access, simpleName);
+            printWrites(cw, access, simpleName);
+            printReindex(cw, simpleName);
+            printState(cw, simpleName);
+            if (indexes.stream().anyMatch(DGenRepository::isLongKey)) printLongIndex(cw);
+            if (indexes.stream().anyMatch(p -> !isUnique(p))) printBucket(cw, simpleName);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printReads(JavaClassWriter cw, String access, String simpleName) throws IOException {
+        cw.println("");
+        cw.println(access + "int size() {return state_.size;}");
+        cw.println("");
+        cw.println(access + "boolean contains(" + simpleName + " bean) {return bean.repository_ == this;}");
+        for (DGenProperty property : indexes) {
+            String name = property.getName();
+            cw.println("");
+            if (isUnique(property)) {
+                cw.startBlock(access + simpleName + " getBy" + DGenProcessor.proper(name) + "(" +
+                        property.getTypeName() + " " + name + ") {");
+                cw.println("return (" + simpleName + ") state_." + indexField(property) + ".get(" + name + ");");
+            } else {
+                cw.println("/**");
+                cw.println(" * @return unmodifiable list of beans, it must not be used after change of repository unless repository is copy-on-write");
+                cw.println(" */");
+                cw.startBlock(access + "java.util.List<" + simpleName + "> findBy" + DGenProcessor.proper(name) + "(" +
+                        property.getTypeName() + " " + name + ") {");
+                cw.println("Bucket_ bucket_ = (Bucket_) state_." + indexField(property) + ".get(" + name + ");");
+                cw.println("return bucket_ == null ? java.util.Collections.emptyList() : bucket_;");
+            }
+            cw.endBlock("}");
+        }
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public java.util.Iterator<" + simpleName + "> iterator() {");
+        cw.println("State_ s_ = state_;");
+        cw.println("return java.util.Collections.unmodifiableList(java.util.Arrays.asList(s_.beans).subList(0, s_.size)).iterator();");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public void forEach(java.util.function.Consumer<? super " + simpleName + "> action) {");
+        cw.println("State_ s_ = state_;");
+        cw.println("for (int i_ = 0; i_ < s_.size; i_++) action.accept(s_.beans[i_]);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "java.util.List<" + simpleName + "> toList() {");
+        cw.println("State_ s_ = state_;");
+        cw.println("return new java.util.ArrayList<>(java.util.Arrays.asList(s_.beans).subList(0, s_.size));");
+        cw.endBlock("}");
+    }
+
+    private void printWrites(JavaClassWriter cw, String access, String simpleName) throws IOException {
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * @return false if bean is already in this repository");
+        cw.println(" * @throws IllegalStateException    if bean is in other repository");
+        cw.println(" * @throws IllegalArgumentException if value of unique property is already indexed");
+        cw.println(" */");
+        cw.startBlock(access + "synchronized boolean add(" + simpleName + " bean) {");
+        cw.println("if (bean.repository_ == this) return false;");
+        cw.println("State_ s_ = writable_(1);");
+        cw.println("s_.add(this, bean);");
+        cw.println("state_ = s_;");
+        cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Adds beans not added yet with tables of indexes sized once, copy-on-write repository is copied once.");
+        cw.println(" * If bean can not be added, beans of collection are not added.");
+        cw.println(" */");
+        cw.startBlock(access + "synchronized void addAll(java.util.Collection<? extends " + simpleName + "> beans) {");
+        cw.println("State_ s_ = writable_(beans.size());");
+        cw.println("s_.addAll(this, beans);");
+        cw.println("state_ = s_;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "synchronized boolean remove(" + simpleName + " bean) {");
+        cw.println("if (bean.repository_ != this) return false;");
+        cw.println("State_ s_ = writable_(0);");
+        cw.println("s_.remove(bean);");
+        cw.println("state_ = s_;");
+        cw.println("return true;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "synchronized void clear() {");
+        cw.println("State_ s_ = state_;");
+        cw.println("for (int i_ = 0; i_ < s_.size; i_++) s_.beans[i_].repository_ = null;");
+        cw.println("state_ = new State_(16);");
+        cw.endBlock("}");
+    }
+
+    /**
+     * Hooks called by setters of bean before new value is assigned
+     */
+    private void printReindex(JavaClassWriter cw, String simpleName) throws IOException {
+        for (DGenProperty property : indexes) {
+            if (bean.isUnmodifiable(property)) continue;
+            String type = property.getTypeName();
+            String field = "s_." + indexField(property);
+            cw.println("");
+            cw.startBlock("synchronized void reindex" + DGenProcessor.proper(property.getName()) + "_(" +
+                    simpleName + " bean, " + type + " old_, " + type + " val_) {");
+            cw.println("if (bean.repository_ != this || " + equalsExpression(property, "old_", "val_") + ") return;");
+            cw.println("State_ s_ = writable_(0);");
+            if (isUnique(property)) {
+                cw.println("s_.checkUnique(" + field + ", val_, bean, \"" + property.getName() + "\");");
+                cw.println(field + ".remove(old_, bean);");
+                cw.println(isLongKey(property) ? field + ".put(val_, bean);" : "if (val_ != null) " + field + ".put(val_, bean);");
+            } else {
+                cw.println("s_.removeFrom(" + field + ", old_, bean);");
+                cw.println("s_.addTo(" + field + ", val_, bean);");
+            }
+            cw.println("state_ = s_;");
+            cw.endBlock("}");
+        }
+    }
+
+    private void printState(JavaClassWriter cw, String simpleName) throws IOException {
+        boolean longs = false, objects = false, longBuckets = false, objectBuckets = false;
+        for (DGenProperty property : indexes) {
+            longs |= isLongKey(property);
+            objects |= !isLongKey(property);
+            longBuckets |= isLongKey(property) && !isUnique(property);
+            objectBuckets |= !isLongKey(property) && !isUnique(property);
+        }
+        cw.println("");
+        cw.startBlock("private static final class State_ {");
+        cw.println("private " + simpleName + "[] beans;");
+        cw.println("private int size;");
+        if (indexes.stream().anyMatch(p -> !isUnique(p))) {
+            cw.println("// identity of state in buckets it may change, old states are not referenced by buckets");
+            cw.println("private final Object owner = new Object();");
+        }
+        for (DGenProperty property : indexes)
+            cw.println("private final " + indexType(property) + " " + indexField(property) + ";");
+
+        cw.println("");
+        cw.startBlock("private State_(int expected) {");
+        cw.println("beans = new " + simpleName + "[expected];");
+        for (DGenProperty property : indexes)
+            cw.println(indexField(property) + " = " + (isLongKey(property) ?
+                    "new LongIndex_(LongIndex_.capacity(expected));" : "new java.util.HashMap<>();"));
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("// copy sharing buckets, they are copied by addTo and removeFrom when changed");
+        cw.startBlock("private State_(State_ state, int added) {");
+        cw.println("beans = java.util.Arrays.copyOf(state.beans, Math.max(state.beans.length, state.size + added));");
+        cw.println("size = state.size;");
+        for (DGenProperty property : indexes)
+            cw.println(indexField(property) + " = copy(state." + indexField(property) + ", state.size + added);");
+        cw.endBlock("}");
+
+        if (longs) {
+            cw.println("");
+            cw.startBlock("private static LongIndex_ copy(LongIndex_ index, int expected) {");
+            cw.println("LongIndex_ copy = new LongIndex_(Math.max(index.keys.length, LongIndex_.capacity(expected)));");
+            cw.startBlock("if (copy.keys.length == index.keys.length) {");
+            cw.println("System.arraycopy(index.keys, 0, copy.keys, 0, index.keys.length);");
+            cw.println("System.arraycopy(index.values, 0, copy.values, 0, index.values.length);");
+            cw.println("copy.size = index.size;");
+            cw.endBlock("} else {");
+            cw.println("    for (int i = 0; i < index.keys.length; i++)");
+            cw.println("        if (index.values[i] != null) copy.put(index.keys[i], index.values[i]);");
+            cw.println("}");
+            cw.println("return copy;");
+            cw.endBlock("}");
+        }
+        if (objects) {
+            cw.println("");
+            cw.startBlock("private static <K> java.util.HashMap<K, Object> copy(java.util.HashMap<K, Object> index, int expected) {");
+            cw.println("java.util.HashMap<K, Object> copy = new java.util.HashMap<>(Math.max(expected, 12) * 4 / 3 + 1);");
+            cw.println("copy.putAll(index);");
+            cw.println("return copy;");
+            cw.endBlock("}");
+        }
+
+        // unique checks are done before bean is changed
+        if (indexes.stream().anyMatch(p -> isUnique(p) && isLongKey(p))) {
+            cw.println("");
+            cw.startBlock("private void checkUnique(LongIndex_ index, long key, " + simpleName + " bean, String name) {");
+            cw.println("Object other = index.get(key);");
+            cw.println("if (other != null && other != bean) throw new IllegalArgumentException(\"duplicate \" + name + \" \" + key);");
+            cw.endBlock("}");
+        }
+        if (indexes.stream().anyMatch(p -> isUnique(p) && !isLongKey(p))) {
+            cw.println("");
+            cw.startBlock("private <K> void checkUnique(java.util.HashMap<K, Object> index, K key, " + simpleName +
+                    " bean, String name) {");
+            cw.println("Object other = key == null ? null : index.get(key);");
+            cw.println("if (other != null && other != bean) throw new IllegalArgumentException(\"duplicate \" + name + \" \" + key);");
+            cw.endBlock("}");
+        }
+        if (longBuckets) {
+            cw.println("");
+            cw.startBlock("private void addTo(LongIndex_ index, long key, " + simpleName + " bean) {");
+            cw.println("Bucket_ bucket = (Bucket_) index.get(key);");
+            cw.println("if (bucket == null) index.put(key, new Bucket_(owner, bean));");
+            cw.println("else if (bucket.owner == owner) bucket.append(bean);");
+            cw.println("else index.put(key, bucket.copy(owner, bean));");
+            cw.endBlock("}");
+            cw.println("");
+            cw.startBlock("private void removeFrom(LongIndex_ index, long key, " + simpleName + " bean) {");
+            cw.println("Bucket_ bucket = (Bucket_) index.get(key);");
+            cw.println("if (bucket == null) return;");
+            cw.println("if (bucket.owner != owner) index.put(key, bucket = bucket.copy(owner, null));");
+            cw.println("bucket.delete(bean);");
+            cw.println("if (bucket.size == 0) index.remove(key, bucket);");
+            cw.endBlock("}");
+        }
+        if (objectBuckets) {
+            cw.println("");
+            cw.startBlock("private <K> void addTo(java.util.HashMap<K, Object> index, K key, " + simpleName + " bean) {");
+            cw.println("if (key == null) return;");
+            cw.println("Bucket_ bucket = (Bucket_) index.get(key);");
+            cw.println("if (bucket == null) index.put(key, new Bucket_(owner, bean));");
+            cw.println("else if (bucket.owner == owner) bucket.append(bean);");
+            cw.println("else index.put(key, bucket.copy(owner, bean));");
+            cw.endBlock("}");
+            cw.println("");
+            cw.startBlock("private <K> void removeFrom(java.util.HashMap<K, Object> index, K key, " + simpleName + " bean) {");
+            cw.println("Bucket_ bucket = key == null ? null : (Bucket_) index.get(key);");
+            cw.println("if (bucket == null) return;");
+            cw.println("if (bucket.owner != owner) index.put(key, bucket = bucket.copy(owner, null));");
+            cw.println("bucket.delete(bean);");
+            cw.println("if (bucket.size == 0) index.remove(key, bucket);");
+            cw.endBlock("}");
+        }
+
+        cw.println("");
+        cw.startBlock("private void add(" + className + " repository, " + simpleName + " bean) {");
+        cw.println("if (bean.repository_ != null) throw new IllegalStateException(\"bean is in other repository\");");
+        for (DGenProperty property : indexes)
+            if (isUnique(property))
+                cw.println("checkUnique(" + indexField(property) + ", bean." + getter(property) + ", bean, \"" +
+                        property.getName() + "\");");
+        cw.println("if (size == beans.length) beans = java.util.Arrays.copyOf(beans, size + (size >> 1) + 1);");
+        cw.println("bean.repository_ = repository;");
+        cw.println("bean.repositorySlot_ = size;");
+        cw.println("beans[size++] = bean;");
+        for (DGenProperty property : indexes) {
+            String field = indexField(property);
+            if (!isUnique(property))
+                cw.println("addTo(" + field + ", bean." + getter(property) + ", bean);");
+            else if (isLongKey(property))
+                cw.println(field + ".put(bean." + getter(property) + ", bean);");
+            else {
+                cw.println("if (bean." + getter(property) + " != null) " + field + ".put(bean." + getter(property) +
+                        ", bean);");
+            }
+        }
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void addAll(" + className + " repository, java.util.Collection<? extends " +
+                simpleName + "> added) {");
+        cw.println("if (beans.length < size + added.size()) beans = java.util.Arrays.copyOf(beans, size + added.size());");
+        for (DGenProperty property : indexes)
+            if (isLongKey(property))
+                cw.println(indexField(property) + ".ensureCapacity(size + added.size());");
+        cw.println("int start = size;");
+        cw.startBlock("try {");
+        cw.println("for (" + simpleName + " bean : added) if (bean.repository_ != repository) add(repository, bean);");
+        cw.endBlock("} catch (RuntimeException e) {");
+        cw.println("    // beans added by this call are at the end of array, they are removed from the last one");
+        cw.println("    while (size > start) remove(beans[size - 1]);");
+        cw.println("    throw e;");
+        cw.println("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void remove(" + simpleName + " bean) {");
+        for (DGenProperty property : indexes) {
+            String field = indexField(property);
+            if (isUnique(property))
+                cw.println(field + ".remove(bean." + getter(property) + ", bean);");
+            else
+                cw.println("removeFrom(" + field + ", bean." + getter(property) + ", bean);");
+        }
+        cw.println("int slot = bean.repositorySlot_;");
+        cw.println(simpleName + " last = beans[--size];");
+        cw.println("beans[slot] = last;");
+        cw.println("last.repositorySlot_ = slot;");
+        cw.println("beans[size] = null;");
+        cw.println("bean.repository_ = null;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+
+    private static void printLongIndex(JavaClassWriter cw) throws IOException {
+        cw.println("");
+        cw.println("// open addressing table with linear probing, null value marks empty slot");
+        cw.startBlock("private static final class LongIndex_ {");
+        cw.println("private long[] keys;");
+        cw.println("private Object[] values;");
+        cw.println("private int size;");
+
+        cw.println("");
+        cw.startBlock("private LongIndex_(int capacity) {");
+        cw.println("keys = new long[capacity];");
+        cw.println("values = new Object[capacity];");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("// power of two keeping load factor not greater than 0.5");
+        cw.startBlock("private static int capacity(int expected) {");
+        cw.println("return Integer.highestOneBit(Math.max(expected, 4) * 2 - 1) << 1;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private static int hash(long key) {");
+        cw.println("return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private int slot(long key) {");
+        cw.println("int mask = keys.length - 1;");
+        cw.println("int slot = hash(key) & mask;");
+        cw.println("while (values[slot] != null && keys[slot] != key) slot = (slot + 1) & mask;");
+        cw.println("return slot;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("private Object get(long key) {return values[slot(key)];}");
+
+        cw.println("");
+        cw.startBlock("private void put(long key, Object value) {");
+        cw.println("int slot = slot(key);");
+        cw.startBlock("if (values[slot] == null) {");
+        cw.startBlock("if ((size + 1) * 2 > keys.length) {");
+        cw.println("ensureCapacity(size + 1);");
+        cw.println("slot = slot(key);");
+        cw.endBlock("}");
+        cw.println("size++;");
+        cw.endBlock("}");
+        cw.println("keys[slot] = key;");
+        cw.println("values[slot] = value;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("// removes key if it is mapped to value, following entries are shifted back to keep probe sequences");
+        cw.startBlock("private void remove(long key, Object value) {");
+        cw.println("int mask = keys.length - 1;");
+        cw.println("int slot = slot(key);");
+        cw.println("if (values[slot] != value || value == null) return;");
+        cw.println("values[slot] = null;");
+        cw.println("size--;");
+        cw.startBlock("for (int next = (slot + 1) & mask; values[next] != null; next = (next + 1) & mask) {");
+        cw.startBlock("if (((next - hash(keys[next])) & mask) >= ((next - slot) & mask)) {");
+        cw.println("keys[slot] = keys[next];");
+        cw.println("values[slot] = values[next];");
+        cw.println("values[next] = null;");
+        cw.println("slot = next;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void ensureCapacity(int expected) {");
+        cw.println("int capacity = capacity(expected);");
+        cw.println("if (capacity <= keys.length) return;");
+        cw.println("long[] oldKeys = keys;");
+        cw.println("Object[] oldValues = values;");
+        cw.println("keys = new long[capacity];");
+        cw.println("values = new Object[capacity];");
+        cw.startBlock("for (int i = 0; i < oldKeys.length; i++) {");
+        cw.println("if (oldValues[i] == null) continue;");
+        cw.println("int slot = slot(oldKeys[i]);");
+        cw.println("keys[slot] = oldKeys[i];");
+        cw.println("values[slot] = oldValues[i];");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+    }
+
+    private static void printBucket(JavaClassWriter cw, String simpleName) throws IOException {
+        cw.println("");
+        cw.println("// beans having the same key in order of addition, changed only by state owning it");
+        cw.startBlock("private static final class Bucket_ extends java.util.AbstractList<" + simpleName +
+                "> implements java.util.RandomAccess {");
+        cw.println("private final Object owner;");
+        cw.println("private " + simpleName + "[] items;");
+        cw.println("private int size;");
+
+        cw.println("");
+        cw.startBlock("private Bucket_(Object owner, " + simpleName + " bean) {");
+        cw.println("this.owner = owner;");
+        cw.println("this.items = new " + simpleName + "[]{bean, null};");
+        cw.println("this.size = 1;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private Bucket_(Object owner, " + simpleName + "[] items, int size) {");
+        cw.println("this.owner = owner;");
+        cw.println("this.items = items;");
+        cw.println("this.size = size;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("// copy for new owner, with added bean if it is not null");
+        cw.startBlock("private Bucket_ copy(Object owner, " + simpleName + " bean) {");
+        cw.println("Bucket_ copy = new Bucket_(owner, java.util.Arrays.copyOf(items, size + (size >> 1) + 1), size);");
+        cw.println("if (bean != null) copy.append(bean);");
+        cw.println("return copy;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void append(" + simpleName + " bean) {");
+        cw.println("if (size == items.length) items = java.util.Arrays.copyOf(items, size + (size >> 1) + 1);");
+        cw.println("items[size++] = bean;");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock("private void delete(" + simpleName + " bean) {");
+        cw.startBlock("for (int i = 0; i < size; i++) {");
+        cw.startBlock("if (items[i] == bean) {");
+        cw.println("System.arraycopy(items, i + 1, items, i, --size - i);");
+        cw.println("items[size] = null;");
+        cw.println("return;");
+        cw.endBlock("}");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.startBlock("public " + simpleName + " get(int index) {");
+        cw.println("if (index >= size) throw new IndexOutOfBoundsException(String.valueOf(index));");
+        cw.println("return items[index];");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("@Override");
+        cw.println("public int size() {return size;}");
+        cw.endBlock("}");
+    }
+}
@@ -0,0 +1,290 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenSortKey;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Generator of sorter for bean with properties marked with {@link DGenSortKey}.
+ * <p>Sort keys are ordered by precedence (value of annotation), then by declaration. Every key is transformed
+ * to unsigned number of its width: sign bit of integers is flipped, bits of negative floating point numbers
+ * are inverted and bits of positive ones have sign bit set, descending keys are inverted. Keys are packed to
+ * one long, so their total width must not exceed 64 bits. Order of packed keys is the same as order of
+ * Integer.compare, Float.compare and so on.</p>
+ * <p>Arrays and lists are sorted by LSD radix sort of packed keys, one pass per byte of key,
+ * passes where all keys have the same byte are skipped. Sort is stable.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenSorter implements DGenCompanion {
+    private static final int INSERTION_SORT_THRESHOLD = 48;
+    private final DGenClass bean;
+    private final String className;
+    private final List<DGenProperty> keys = new ArrayList<>();
+    private int bits;
+
+    DGenSorter(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Sorter";
+    }
+
+    static boolean isSortKey(DGenProperty property) {
+        return property.hasAnnotation(DGenSortKey.class.getName());
+    }
+
+    private static int precedence(DGenProperty property) {
+        Object value = property.getAnnotationValue(DGenSortKey.class.getName(), "value");
+        return value == null ? 0 : (Integer) value;
+    }
+
+    private static boolean isDescending(DGenProperty property) {
+        Object value = property.getAnnotationValue(DGenSortKey.class.getName(), "descending");
+        return value != null && (Boolean) value;
+    }
+
+    private static int width(DGenType type) {
+        if (!type.isPrimitive()) return -1;
+        switch (type.getKind()) {
+            case BOOLEAN:
+                return 1;
+            case BYTE:
+                return 8;
+            case SHORT:
+            case CHAR:
+                return 16;
+            case INT:
+            case FLOAT:
+                return 32;
+            default:
+                return 64;
+        }
+    }
+
+    /**
+     * @return expression of unsigned key of property value, in bits of property width
+     */
+    private static String key(DGenProperty property, String value) {
+        String key;
+        switch (property.getGenType().getKind()) {
+            case BOOLEAN:
+                key = "(" + value + " ? 1L : 0L)";
+                break;
+            case BYTE:
+                key = "((" + value + " ^ 0x80) & 0xFFL)";
+                break;
+            case SHORT:
+                key = "((" + value + " ^ 0x8000) & 0xFFFFL)";
+                break;
+            case CHAR:
+                key = "((long) " + value + ")";
+                break;
+            case INT:
+                key = "((" + value + " ^ 0x80000000) & 0xFFFFFFFFL)";
+                break;
+            case LONG:
+                key = "(" + value + " ^ Long.MIN_VALUE)";
+                break;
+            case FLOAT:
+                key = "floatKey(" + value + ")";
+                break;
+            default:
+                key = "doubleKey(" + value + ")";
+        }
+        if (!isDescending(property)) return key;
+        int width = width(property.getGenType());
+        return width == 64 ? "~" + key : "(~" + key + " & 0x" + Long.toHexString((1L << width) - 1).toUpperCase() + "L)";
+    }
+
+    private static String compare(DGenProperty property) {
+        String getter = ".get" + DGenProcessor.proper(property.getName()) + "()";
+        String a = isDescending(property) ? "b" : "a";
+        String b = isDescending(property) ? "a" : "b";
+        return property.getGenType().getBoxedName() + ".compare(" + a + getter + ", " + b + getter + ")";
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : bean.getProperties())
+            if (isSortKey(property)) {
+                int width = width(property.getGenType());
+                if (width < 0) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                            "sort key must be of primitive type", property.getElement());
+                    valid = false;
+                }
+                keys.add(property);
+                bits += width;
+            }
+        if (valid && bits > 64) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "sort keys of " +
+                    bean.getSimpleName() + " take " + bits + " bits, no more than 64 bits are packed to key",
+                    bean.getPrototype());
+            valid = false;
+        }
+        keys.sort(Comparator.comparingInt(DGenSorter::precedence));
+        return valid;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            cw.println(access + "static final int KEY_BITS = " + bits + ";");
+            cw.println(access + "static final java.util.Comparator<" + simpleName + "> COMPARATOR = " +
+                    className + "::compare;");
+            cw.println("private static final int PASSES_ = " + (bits + 7) / 8 + ";");
+            cw.println("private static final int INSERTION_SORT_THRESHOLD_ = " + INSERTION_SORT_THRESHOLD + ";");
+            cw.println("");
+            cw.println("private " + className + "() {}");
+            /*
+                Packed key
+            */
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return packed sort keys " + keys.stream()
+                    .map(p -> p.getName() + (isDescending(p) ? " (descending)" : ""))
+                    .collect(Collectors.joining(", ")) + ", ordered as signed long");
+            cw.println(" */");
+            cw.startBlock(access + "static long key(" + simpleName + " bean) {");
+            for (int i = 0; i < keys.size(); i++) {
+                DGenProperty property = keys.get(i);
+                String value = key(property, "bean.get" + DGenProcessor.proper(property.getName()) + "()");
+                cw.println(i == 0 ? "long key_ = " + value + ";" :
+                        "key_ = key_ << " + width(property.getGenType()) + " | " + value + ";");
+            }
+            cw.println("return key_ ^ Long.MIN_VALUE;");
+            cw.endBlock("}");
+            printKeyHelpers(cw);
+            /*
+                Comparator by the same keys
+            */
+            cw.println("");
+            cw.startBlock(access + "static int compare(" + simpleName + " a, " + simpleName + " b) {");
+            if (keys.size() > 1) cw.println("int c_;");
+            for (int i = 0; i < keys.size() - 1; i++)
+                cw.println("if ((c_ = " + compare(keys.get(i)) + ") != 0) return c_;");
+            cw.println("return " + compare(keys.get(keys.size() - 1)) + ";");
+            cw.endBlock("}");
+
+            printSort(cw, access, simpleName);
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void printKeyHelpers(JavaClassWriter cw) throws IOException {
+        boolean floats = false, doubles = false;
+        for (DGenProperty property : keys) {
+            floats |= property.getGenType().getKind() == DGenType.Kind.FLOAT;
+            doubles |= property.getGenType().getKind() == DGenType.Kind.DOUBLE;
+        }
+        if (floats) {
+            cw.println("");
+            cw.startBlock("private static long floatKey(float v) {");
+            cw.println("int bits_ = Float.floatToIntBits(v);");
+            cw.println("return (bits_ ^ (bits_ >> 31 | 0x80000000)) & 0xFFFFFFFFL;");
+            cw.endBlock("}");
+        }
+        if (doubles) {
+            cw.println("");
+            cw.startBlock("private static long doubleKey(double v) {");
+            cw.println("long bits_ = Double.doubleToLongBits(v);");
+            cw.println("return bits_ ^ (bits_ >> 63 | Long.MIN_VALUE);");
+            cw.endBlock("}");
+        }
+    }
+
+    private void printSort(JavaClassWriter cw, String access, String simpleName) throws IOException {
+        cw.println("");
+        cw.startBlock(access + "static void sort(" + simpleName + "[] a) {");
+        cw.println("sort(a, 0, a.length);");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.startBlock(access + "static void sort(java.util.List<" + simpleName + "> list) {");
+        cw.println(simpleName + "[] a_ = list.toArray(new " + simpleName + "[0]);");
+        cw.println("sort(a_, 0, a_.length);");
+        cw.println("java.util.ListIterator<" + simpleName + "> it_ = list.listIterator();");
+        cw.startBlock("for (" + simpleName + " e_ : a_) {");
+        cw.println("it_.next();");
+        cw.println("it_.set(e_);");
+        cw.endBlock("}");
+        cw.endBlock("}");
+
+        cw.println("");
+        cw.println("/**");
+        cw.println(" * Sorts range of array from index 'from' inclusive to index 'to' exclusive, keys are extracted once");
+        cw.println(" */");
+        cw.startBlock(access + "static void sort(" + simpleName + "[] a, int from, int to) {");
+        cw.println("if (from < 0 || to > a.length || from > to) throw new ArrayIndexOutOfBoundsException(" +
+                "\"range [\" + from + \", \" + to + \") of array with length \" + a.length);");
+        cw.println("int n_ = to - from;");
+        cw.println("if (n_ < 2) return;");
+        cw.println("long[] keys_ = new long[n_];");
+        cw.println("for (int i_ = 0; i_ < n_; i_++) keys_[i_] = key(a[from + i_]);");
+        cw.startBlock("if (n_ < INSERTION_SORT_THRESHOLD_) {");
+        cw.startBlock("for (int i_ = from + 1; i_ < to; i_++) {");
+        cw.println("long k_ = keys_[i_ - from];");
+        cw.println(simpleName + " e_ = a[i_];");
+        cw.println("int j_ = i_ - 1;");
+        cw.startBlock("for (; j_ >= from && keys_[j_ - from] > k_; j_--) {");
+        cw.println("keys_[j_ + 1 - from] = keys_[j_ - from];");
+        cw.println("a[j_ + 1] = a[j_];");
+        cw.endBlock("}");
+        cw.println("keys_[j_ + 1 - from] = k_;");
+        cw.println("a[j_ + 1] = e_;");
+        cw.endBlock("}");
+        cw.println("return;");
+        cw.endBlock("}");
+        cw.println("// unsigned digits of keys, counted for all passes at once");
+        cw.println("int[][] counts_ = new int[PASSES_][256];");
+        cw.startBlock("for (long k_ : keys_) {");
+        cw.println("long u_ = k_ ^ Long.MIN_VALUE;");
+        cw.println("for (int p_ = 0; p_ < PASSES_; p_++) counts_[p_][(int) (u_ >>> (p_ << 3)) & 0xFF]++;");
+        cw.endBlock("}");
+        cw.println(simpleName + "[] items_ = java.util.Arrays.copyOfRange(a, from, to);");
+        cw.println(simpleName + "[] itemsTo_ = null;");
+        cw.println("long[] keysTo_ = null;");
+        cw.startBlock("for (int p_ = 0; p_ < PASSES_; p_++) {");
+        cw.println("int shift_ = p_ << 3;");
+        cw.println("int[] count_ = counts_[p_];");
+        cw.println("if (count_[(int) ((keys_[0] ^ Long.MIN_VALUE) >>> shift_) & 0xFF] == n_) continue;");
+        cw.startBlock("if (itemsTo_ == null) {");
+        cw.println("itemsTo_ = new " + simpleName + "[n_];");
+        cw.println("keysTo_ = new long[n_];");
+        cw.endBlock("}");
+        cw.startBlock("for (int d_ = 0, offset_ = 0; d_ < 256; d_++) {");
+        cw.println("int c_ = count_[d_];");
+        cw.println("count_[d_] = offset_;");
+        cw.println("offset_ += c_;");
+        cw.endBlock("}");
+        cw.startBlock("for (int i_ = 0; i_ < n_; i_++) {");
+        cw.println("int position_ = count_[(int) ((keys_[i_] ^ Long.MIN_VALUE) >>> shift_) & 0xFF]++;");
+        cw.println("keysTo_[position_] = keys_[i_];");
+        cw.println("itemsTo_[position_] = items_[i_];");
+        cw.endBlock("}");
+        cw.println("long[] keys0_ = keys_;");
+        cw.println("keys_ = keysTo_;");
+        cw.println("keysTo_ = keys0_;");
+        cw.println(simpleName + "[] items0_ = items_;");
+        cw.println("items_ = itemsTo_;");
+        cw.println("itemsTo_ = items0_;");
+        cw.endBlock("}");
+        cw.println("System.arraycopy(items_, 0, a, from, n_);");
+        cw.endBlock("}");
+    }
+}
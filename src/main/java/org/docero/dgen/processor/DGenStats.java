@@ -0,0 +1,100 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compilation statistics of processor, enabled by option -Adgen.stats=true.
+ * <p>For every prototype records time of model building with validation and rendering, number of properties,
+ * and size of generated files. Report written to dgen-stats.csv in generated sources directory
+ * and summarized by compiler notes.</p>
+ * <p>Report file is not related to any prototype, so incremental compilation
+ * falls back to full recompilation while statistics are enabled.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenStats {
+    static final String OPTION = "dgen.stats";
+    static final String REPORT = "dgen-stats.csv";
+
+    static class Record {
+        final int round;
+        final String prototype;
+        final String target;
+        final boolean isInterface;
+        final int properties;
+        final long modelNanos;
+        long renderNanos;
+        int files;
+        long bytes;
+        long lines;
+
+        private Record(int round, DGenClass bean, long modelNanos) {
+            this.round = round;
+            this.prototype = bean.getSourceName().toString();
+            this.target = bean.getTargetClassName();
+            this.isInterface = bean.isInterface();
+            this.properties = bean.getProperties().size();
+            this.modelNanos = modelNanos;
+        }
+
+        synchronized void addFile(long bytes, long lines) {
+            this.files++;
+            this.bytes += bytes;
+            this.lines += lines;
+        }
+    }
+
+    private final List<Record> records = new ArrayList<>();
+
+    static boolean isEnabled(ProcessingEnvironment environment) {
+        return Boolean.parseBoolean(environment.getOptions().get(OPTION));
+    }
+
+    Record add(int round, DGenClass bean, long modelNanos) {
+        Record record = new Record(round, bean, modelNanos);
+        records.add(record);
+        return record;
+    }
+
+    void report(ProcessingEnvironment environment) {
+        try {
+            FileObject file = environment.getFiler().createResource(StandardLocation.SOURCE_OUTPUT, "", REPORT);
+            try (Writer writer = file.openWriter()) {
+                writer.write("round,prototype,target,kind,properties,model_ns,render_ns,files,bytes,lines\n");
+                for (Record r : records)
+                    writer.write(r.round + "," + r.prototype + "," + r.target + "," +
+                            (r.isInterface ? "interface" : "bean") + "," + r.properties + "," +
+                            r.modelNanos + "," + r.renderNanos + "," + r.files + "," + r.bytes + "," + r.lines + "\n");
+            }
+        } catch (IOException e) {
+            environment.getMessager().printMessage(Diagnostic.Kind.WARNING,
+                    "dgen: statistics report is not written: " + e.getMessage());
+        }
+
+        long model = 0, render = 0, bytes = 0, lines = 0;
+        int files = 0;
+        for (Record r : records) {
+            model += r.modelNanos;
+            render += r.renderNanos;
+            files += r.files;
+            bytes += r.bytes;
+            lines += r.lines;
+        }
+        environment.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                "dgen: %d prototypes, %d files, %d bytes, %d lines; model %.1f ms, rendering %.1f ms",
+                records.size(), files, bytes, lines, model / 1e6, render / 1e6));
+        records.stream()
+                .sorted(Comparator.comparingLong((Record r) -> r.modelNanos + r.renderNanos).reversed())
+                .limit(5)
+                .forEach(r -> environment.getMessager().printMessage(Diagnostic.Kind.NOTE, String.format(
+                        "dgen: %s - %d properties, %d files, %d bytes; model %.1f ms, rendering %.1f ms",
+                        r.prototype, r.properties, r.files, r.bytes, r.modelNanos / 1e6, r.renderNanos / 1e6)));
+    }
+}
@@ -0,0 +1,242 @@
+package org.docero.dgen.processor;
+
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Simplified description of property type, used by code generators.
+ * <p>Holds only strings and flags, so it may be used without access to compiler model.</p>
+ */
+@SuppressWarnings({"WeakerAccess", "unused"})
+public class DGenType {
+    enum Kind {BOOLEAN, BYTE, SHORT, CHAR, INT, LONG, FLOAT, DOUBLE, STRING, ENUM, LIST, MAP, OTHER}
+
+    final private String name;
+    final private Kind kind;
+    final private boolean primitive;
+    final private List<DGenType> arguments;
+
+    static DGenType of(TypeMirror type) {
+        if (type == null) return new DGenType("java.lang.Object", Kind.OTHER, false, Collections.emptyList());
+        if (type.getKind().isPrimitive())
+            return new DGenType(type.toString(), primitiveKind(type.getKind()), true, Collections.emptyList());
+        if (type.getKind() != TypeKind.DECLARED)
+            return new DGenType(type.toString(), Kind.OTHER, false, Collections.emptyList());
+
+        DeclaredType declared = (DeclaredType) type;
+        TypeElement element = (TypeElement) declared.asElement();
+        List<DGenType> arguments = declared.getTypeArguments().stream()
+                .map(DGenType::of)
+                .collect(Collectors.toList());
+        Kind kind;
+        if (element.getKind() == ElementKind.ENUM) kind = Kind.ENUM;
+        else switch (element.getQualifiedName().toString()) {
+            case "java.lang.Boolean":
+                kind = Kind.BOOLEAN;
+                break;
+            case "java.lang.Byte":
+                kind = Kind.BYTE;
+                break;
+            case "java.lang.Short":
+                kind = Kind.SHORT;
+                break;
+            case "java.lang.Character":
+                kind = Kind.CHAR;
+                break;
+            case "java.lang.Integer":
+                kind = Kind.INT;
+                break;
+            case "java.lang.Long":
+                kind = Kind.LONG;
+                break;
+            case "java.lang.Float":
+                kind = Kind.FLOAT;
+                break;
+            case "java.lang.Double":
+                kind = Kind.DOUBLE;
+                break;
+            case "java.lang.String":
+                kind = Kind.STRING;
+                break;
+            case "java.util.List":
+                kind = arguments.size() == 1 ? Kind.LIST : Kind.OTHER;
+                break;
+            case "java.util.Map":
+                kind = arguments.size() == 2 ? Kind.MAP : Kind.OTHER;
+                break;
+            default:
+                kind = Kind.OTHER;
+        }
+        return new DGenType(type.toString(), kind, false, arguments);
+    }
+
+    private static Kind primitiveKind(TypeKind kind) {
+        switch (kind) {
+            case BOOLEAN:
+                return Kind.BOOLEAN;
+            case BYTE:
+                return Kind.BYTE;
+            case SHORT:
+                return Kind.SHORT;
+            case CHAR:
+                return Kind.CHAR;
+            case INT:
+                return Kind.INT;
+            case LONG:
+                return Kind.LONG;
+            case FLOAT:
+                return Kind.FLOAT;
+            default:
+                return Kind.DOUBLE;
+        }
+    }
+
+    private DGenType(String name, Kind kind, boolean primitive, List<DGenType> arguments) {
+        this.name = name;
+        this.kind = kind;
+        this.primitive = primitive;
+        this.arguments = arguments;
+    }
+
+    /**
+     * @return full type name, as it printed in generated source
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return type name without type arguments
+     */
+    public String getErasedName() {
+        int i = name.indexOf('<');
+        return i < 0 ? name : name.substring(0, i);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return true for java primitive types: int, long, etc.
+     */
+    public boolean isPrimitive() {
+        return primitive;
+    }
+
+    /**
+     * @return true for primitive wrappers: Integer, Long, etc.
+     */
+    public boolean isBoxed() {
+        return !primitive && kind.ordinal() <= Kind.DOUBLE.ordinal();
+    }
+
+    /**
+     * @return true for primitives, wrappers, strings and enums
+     */
+    public boolean isScalar() {
+        return kind.ordinal() <= Kind.ENUM.ordinal();
+    }
+
+    public List<DGenType> getArguments() {
+        return arguments;
+    }
+
+    public DGenType getArgument(int index) {
+        return arguments.get(index);
+    }
+
+    /**
+     * @return name of primitive type for primitives and its wrappers, null for other types
+     */
+    public String getPrimitiveName() {
+        switch (kind) {
+            case BOOLEAN:
+                return "boolean";
+            case BYTE:
+                return "byte";
+            case SHORT:
+                return "short";
+            case CHAR:
+                return "char";
+            case INT:
+                return "int";
+            case LONG:
+                return "long";
+            case FLOAT:
+                return "float";
+            case DOUBLE:
+                return "double";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * @return name of wrapper class for primitives, type name for other types
+     */
+    public String getBoxedName() {
+        switch (kind) {
+            case BOOLEAN:
+                return "java.lang.Boolean";
+            case BYTE:
+                return "java.lang.Byte";
+            case SHORT:
+                return "java.lang.Short";
+            case CHAR:
+                return "java.lang.Character";
+            case INT:
+                return "java.lang.Integer";
+            case LONG:
+                return "java.lang.Long";
+            case FLOAT:
+                return "java.lang.Float";
+            case DOUBLE:
+                return "java.lang.Double";
+            default:
+                return name;
+        }
+    }
+
+    /**
+     * @return default value of field with this type
+     */
+    public String getDefaultValue() {
+        return primitive ? getPrimitiveDefaultValue() : "null";
+    }
+
+    /**
+     * @return default value of primitive type for primitives and its wrappers, null for other types
+     */
+    public String getPrimitiveDefaultValue() {
+        switch (kind) {
+            case BOOLEAN:
+                return "false";
+            case LONG:
+                return "0L";
+            case FLOAT:
+                return "0f";
+            case DOUBLE:
+                return "0d";
+            case INT:
+                return "0";
+            case BYTE:
+            case SHORT:
+            case CHAR:
+                return "(" + getPrimitiveName() + ") 0";
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,391 @@
+package org.docero.dgen.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Generator of validator for bean with properties marked with Bean Validation constraints
+ * of javax.validation.constraints (or jakarta.validation.constraints) package.
+ * <p>Constraints are checked inline by generated code without reflection, violations are returned as mask
+ * with one bit per constraint, so valid bean is checked without allocation. Messages are created only
+ * when they are requested: explicit message of constraint, or default message of Hibernate Validator
+ * without interpolation. Constraints of other groups than Default are not checked, constraints without
+ * generated check (Past, Future, Digits, Email...) are reported by warning.</p>
+ */
+@SuppressWarnings("WeakerAccess")
+public class DGenValidator implements DGenCompanion {
+    private static final String[] PACKAGES = {"javax.validation.constraints.", "jakarta.validation.constraints."};
+    private static final String[] PATTERN_FLAGS = {"UNIX_LINES", "CASE_INSENSITIVE", "COMMENTS", "MULTILINE",
+            "DOTALL", "UNICODE_CASE", "CANON_EQ"};
+
+    private final DGenClass bean;
+    private final String className;
+    private final Map<DGenProperty, List<Constraint>> constraints = new LinkedHashMap<>();
+    private final List<String> fields = new ArrayList<>();
+    private boolean blankCheck;
+    private int count;
+
+    private static final class Constraint {
+        final String constant;
+        final String violated;
+        final String message;
+
+        Constraint(String constant, String violated, String message) {
+            this.constant = constant;
+            this.violated = violated;
+            this.message = message;
+        }
+    }
+
+    DGenValidator(DGenClass bean) {
+        this.bean = bean;
+        this.className = bean.getSimpleName() + "Validator";
+    }
+
+    /**
+     * @return simple name of constraint annotation, or null if annotation is not a Bean Validation constraint
+     */
+    private static String constraintName(DGenProperty.AnnotationSnapshot annotation) {
+        for (String p : PACKAGES)
+            if (annotation.type.startsWith(p) && annotation.type.indexOf('.', p.length()) < 0)
+                return annotation.type.substring(p.length());
+        return null;
+    }
+
+    static boolean hasConstraints(DGenProperty property) {
+        return property.getGetterAnnotations().stream().anyMatch(a -> constraintName(a) != null);
+    }
+
+    private static boolean isIntegral(DGenType type) {
+        switch (type.getKind()) {
+            case BYTE:
+            case SHORT:
+            case INT:
+            case LONG:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isNumber(DGenType type) {
+        return isIntegral(type) || type.getKind() == DGenType.Kind.FLOAT || type.getKind() == DGenType.Kind.DOUBLE;
+    }
+
+    private static boolean isBig(DGenType type) {
+        return type.getName().equals("java.math.BigDecimal") || type.getName().equals("java.math.BigInteger");
+    }
+
+    private static boolean isAssignable(ProcessingEnvironment processingEnv, TypeMirror type, String to) {
+        if (type == null || processingEnv.getElementUtils().getTypeElement(to) == null) return false;
+        Types types = processingEnv.getTypeUtils();
+        return types.isAssignable(types.erasure(type),
+                types.erasure(processingEnv.getElementUtils().getTypeElement(to).asType()));
+    }
+
+    private static boolean isCharSequence(ProcessingEnvironment processingEnv, DGenProperty property) {
+        return property.getGenType().getKind() == DGenType.Kind.STRING ||
+                isAssignable(processingEnv, property.getType(), "java.lang.CharSequence");
+    }
+
+    /**
+     * @return expression of size of value for strings, collections, maps and arrays, null for other types
+     */
+    private static String sizeOf(ProcessingEnvironment processingEnv, DGenProperty property, String value) {
+        DGenType type = property.getGenType();
+        if (type.getName().endsWith("[]")) return value + ".length";
+        if (isCharSequence(processingEnv, property)) return value + ".length()";
+        if (type.getKind() == DGenType.Kind.LIST || type.getKind() == DGenType.Kind.MAP ||
+                isAssignable(processingEnv, property.getType(), "java.util.Collection") ||
+                isAssignable(processingEnv, property.getType(), "java.util.Map"))
+            return value + ".size()";
+        return null;
+    }
+
+    /**
+     * @return condition of violation of comparison 'value operator bound' for numbers, it is false for null
+     */
+    private String compare(DGenType type, String value, String operator, BigDecimal bound, String constant) {
+        if (isIntegral(type) && bound.scale() <= 0)
+            return value + " " + operator + " " + bound.longValueExact() + "L";
+        if (isNumber(type))
+            return value + " " + operator + " " + bound.doubleValue() + "d";
+        String decimal = bound.scale() <= 0 ?
+                "java.math.BigDecimal.valueOf(" + bound.longValueExact() + "L)" :
+                "new java.math.BigDecimal(\"" + bound.toPlainString() + "\")";
+        if (type.getName().equals("java.math.BigDecimal")) {
+            fields.add("private static final java.math.BigDecimal " + constant + "_ = " + decimal + ";");
+            return value + ".compareTo(" + constant + "_) " + operator + " 0";
+        }
+        if (bound.scale() <= 0) {
+            fields.add("private static final java.math.BigInteger " + constant + "_ = java.math.BigInteger.valueOf(" +
+                    bound.longValueExact() + "L);");
+            return value + ".compareTo(" + constant + "_) " + operator + " 0";
+        }
+        fields.add("private static final java.math.BigDecimal " + constant + "_ = " + decimal + ";");
+        return "new java.math.BigDecimal(" + value + ").compareTo(" + constant + "_) " + operator + " 0";
+    }
+
+    private static String patternFlags(Object flags) {
+        if (flags == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (String flag : PATTERN_FLAGS)
+            if (flags.toString().matches("(?s).*\\b" + flag + "\\b.*"))
+                sb.append(sb.length() == 0 ? ", " : " | ").append("java.util.regex.Pattern.").append(flag);
+        return sb.toString();
+    }
+
+    /**
+     * @return violation condition of constraint, null if constraint is not applicable to property type
+     */
+    private String violation(ProcessingEnvironment processingEnv, DGenProperty property, String name,
+                             DGenProperty.AnnotationSnapshot annotation, String constant) {
+        DGenType type = property.getGenType();
+        String value = "v_" + property.getName();
+        String guard = type.isPrimitive() ? "" : value + " != null && ";
+        Map<String, Object> values = annotation.values;
+        switch (name) {
+            case "NotNull":
+                return type.isPrimitive() ? "" : value + " == null";
+            case "Null":
+                return type.isPrimitive() ? null : value + " != null";
+            case "AssertTrue":
+            case "AssertFalse":
+                if (type.getKind() != DGenType.Kind.BOOLEAN) return null;
+                return guard + (name.equals("AssertTrue") ? "!" + value : value);
+            case "Min":
+            case "Max":
+                if (!isNumber(type) && !isBig(type)) return null;
+                return guard + compare(type, value, name.equals("Min") ? "<" : ">",
+                        BigDecimal.valueOf(((Number) values.get("value")).longValue()), constant);
+            case "DecimalMin":
+            case "DecimalMax": {
+                if (!isNumber(type) && !isBig(type)) return null;
+                BigDecimal bound = new BigDecimal((String) values.get("value"));
+                boolean inclusive = values.get("inclusive") == null || (Boolean) values.get("inclusive");
+                String operator = name.equals("DecimalMin") ? (inclusive ? "<" : "<=") : (inclusive ? ">" : ">=");
+                return guard + compare(type, value, operator, bound, constant);
+            }
+            case "Positive":
+            case "PositiveOrZero":
+            case "Negative":
+            case "NegativeOrZero": {
+                if (!isNumber(type) && !isBig(type)) return null;
+                String operator = name.startsWith("Positive") ?
+                        (name.endsWith("OrZero") ? "<" : "<=") : (name.endsWith("OrZero") ? ">" : ">=");
+                if (isBig(type)) return guard + value + ".signum() " + operator + " 0";
+                return guard + value + " " + operator + " 0";
+            }
+            case "Size": {
+                String size = sizeOf(processingEnv, property, value);
+                if (size == null) return null;
+                int min = values.get("min") == null ? 0 : (Integer) values.get("min");
+                int max = values.get("max") == null ? Integer.MAX_VALUE : (Integer) values.get("max");
+                if (min <= 0 && max == Integer.MAX_VALUE) return "";
+                if (min <= 0) return guard + size + " > " + max;
+                if (max == Integer.MAX_VALUE) return guard + size + " < " + min;
+                return guard + "(" + size + " < " + min + " || " + size + " > " + max + ")";
+            }
+            case "NotEmpty": {
+                String size = sizeOf(processingEnv, property, value);
+                return size == null ? null : value + " == null || " + size + " == 0";
+            }
+            case "NotBlank":
+                if (!isCharSequence(processingEnv, property)) return null;
+                blankCheck = true;
+                return value + " == null || isBlank_(" + value + ")";
+            case "Pattern":
+                if (!isCharSequence(processingEnv, property)) return null;
+                fields.add("private static final java.util.regex.Pattern " + constant + "_ = " +
+                        "java.util.regex.Pattern.compile(" + DGenJsonCodec.javaString((String) values.get("regexp")) +
+                        patternFlags(values.get("flags")) + ");");
+                return guard + "!" + constant + "_.matcher(" + value + ").matches()";
+            default:
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "constraint @" + name +
+                        " is not checked by generated validator", property.getElement());
+                return "";
+        }
+    }
+
+    private static String defaultMessage(String name, Map<String, Object> values) {
+        switch (name) {
+            case "NotNull":
+                return "must not be null";
+            case "Null":
+                return "must be null";
+            case "AssertTrue":
+                return "must be true";
+            case "AssertFalse":
+                return "must be false";
+            case "Min":
+                return "must be greater than or equal to " + values.get("value");
+            case "Max":
+                return "must be less than or equal to " + values.get("value");
+            case "DecimalMin":
+                return "must be greater than " + (Boolean.FALSE.equals(values.get("inclusive")) ? "" : "or equal to ") +
+                        values.get("value");
+            case "DecimalMax":
+                return "must be less than " + (Boolean.FALSE.equals(values.get("inclusive")) ? "" : "or equal to ") +
+                        values.get("value");
+            case "Positive":
+                return "must be greater than 0";
+            case "PositiveOrZero":
+                return "must be greater than or equal to 0";
+            case "Negative":
+                return "must be less than 0";
+            case "NegativeOrZero":
+                return "must be less than or equal to 0";
+            case "Size":
+                return "size must be between " + (values.get("min") == null ? 0 : values.get("min")) + " and " +
+                        (values.get("max") == null ? Integer.MAX_VALUE : values.get("max"));
+            case "NotEmpty":
+                return "must not be empty";
+            case "NotBlank":
+                return "must not be blank";
+            default:
+                return "must match \"" + values.get("regexp") + "\"";
+        }
+    }
+
+    @Override
+    public boolean validate(ProcessingEnvironment processingEnv) {
+        boolean valid = true;
+        for (DGenProperty property : bean.getProperties())
+            for (DGenProperty.AnnotationSnapshot annotation : property.getGetterAnnotations()) {
+                String name = constraintName(annotation);
+                Object groups = annotation.values.get("groups");
+                if (name == null || groups != null && !groups.toString().contains(".validation.groups.Default"))
+                    continue;
+                String constant = DGenJdbcMapper.snakeCase(property.getName()).toUpperCase(Locale.ROOT) + "_" +
+                        DGenJdbcMapper.snakeCase(name).toUpperCase(Locale.ROOT);
+                List<Constraint> list = constraints.computeIfAbsent(property, p -> new ArrayList<>());
+                if (list.stream().anyMatch(c -> c.constant.equals(constant))) continue;
+                String violated;
+                try {
+                    violated = violation(processingEnv, property, name, annotation, constant);
+                } catch (NumberFormatException | ArithmeticException e) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "bound of @" + name +
+                            " can not be compared with " + property.getTypeName() + ": " + e.getMessage(),
+                            property.getElement());
+                    valid = false;
+                    continue;
+                }
+                if (violated == null) {
+                    processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "constraint @" + name +
+                            " is not applicable to property " + property.getName() + " of type " +
+                            property.getTypeName(), property.getElement());
+                    valid = false;
+                } else if (!violated.isEmpty()) {
+                    Object message = annotation.values.get("message");
+                    list.add(new Constraint(constant, violated, property.getName() + ": " +
+                            (message != null && !message.toString().startsWith("{") ? message :
+                                    defaultMessage(name, annotation.values))));
+                    count++;
+                }
+            }
+        constraints.values().removeIf(List::isEmpty);
+        if (count > 64) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, bean.getSimpleName() + " has " + count +
+                    " constraints, no more than 64 constraints are checked by generated validator", bean.getPrototype());
+            valid = false;
+        }
+        return valid && count > 0;
+    }
+
+    @Override
+    public void render() {
+        String simpleName = bean.getSimpleName();
+        String access = bean.isPackagePrivate() ? "" : "public ";
+        try (JavaClassWriter cw = bean.openWriter(bean.getPackageName() + "." + className)) {
+            cw.println("package " + bean.getPackageName() + ";");
+            cw.startBlock("/*");
+            cw.println("This class is generated from " + bean.getSourceName());
+            cw.println("by Docero Generation Library. Any modifications may be lost on compile stage!");
+            cw.endBlock("*/");
+            cw.startBlock(access + "final class " + className + " {");
+            int bit = 0;
+            List<String> messages = new ArrayList<>();
+            List<String> properties = new ArrayList<>();
+            for (Map.Entry<DGenProperty, List<Constraint>> e : constraints.entrySet())
+                for (Constraint constraint : e.getValue()) {
+                    cw.println(access + "static final long " + constraint.constant + " = 0x" +
+                            Long.toHexString(1L << bit++) + "L;");
+                    messages.add(DGenJsonCodec.javaString(constraint.message));
+                    properties.add(DGenJsonCodec.javaString(e.getKey().getName()));
+                }
+            cw.println("private static final java.lang.String[] MESSAGES_ = {" + String.join(", ", messages) + "};");
+            cw.println("private static final java.lang.String[] PROPERTIES_ = {" + String.join(", ", properties) + "};");
+            for (String field : fields) cw.println(field);
+            cw.println("");
+            cw.println("private " + className + "() {}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return mask of violated constraints, 0 if bean is valid");
+            cw.println(" */");
+            cw.startBlock(access + "static long validate(" + simpleName + " bean) {");
+            cw.println("long violations_ = 0L;");
+            for (Map.Entry<DGenProperty, List<Constraint>> e : constraints.entrySet()) {
+                DGenProperty property = e.getKey();
+                cw.println(property.getTypeName() + " v_" + property.getName() + " = bean.get" +
+                        DGenProcessor.proper(property.getName()) + "();");
+                for (Constraint constraint : e.getValue())
+                    cw.println("if (" + constraint.violated + ") violations_ |= " + constraint.constant + ";");
+            }
+            cw.println("return violations_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println(access + "static boolean isValid(" + simpleName + " bean) {return validate(bean) == 0L;}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return messages of violated constraints in order of their bits, as 'property: message'");
+            cw.println(" */");
+            cw.startBlock(access + "static java.util.List<java.lang.String> messages(long violations) {");
+            cw.println("java.util.List<java.lang.String> list_ = new java.util.ArrayList<>(Long.bitCount(violations));");
+            cw.println("for (long v_ = violations; v_ != 0L; v_ &= v_ - 1) list_.add(MESSAGES_[Long.numberOfTrailingZeros(v_)]);");
+            cw.println("return list_;");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return name of property of the lowest violated constraint, null if there is no violations");
+            cw.println(" */");
+            cw.startBlock(access + "static java.lang.String propertyOf(long violations) {");
+            cw.println("return violations == 0L ? null : PROPERTIES_[Long.numberOfTrailingZeros(violations)];");
+            cw.endBlock("}");
+
+            cw.println("");
+            cw.println("/**");
+            cw.println(" * @return bean if it is valid");
+            cw.println(" * @throws IllegalArgumentException with messages of violated constraints");
+            cw.println(" */");
+            cw.startBlock(access + "static " + simpleName + " requireValid(" + simpleName + " bean) {");
+            cw.println("long violations_ = validate(bean);");
+            cw.println("if (violations_ != 0L) throw new IllegalArgumentException(java.lang.String.join(\"; \", messages(violations_)));");
+            cw.println("return bean;");
+            cw.endBlock("}");
+
+            if (blankCheck) {
+                cw.println("");
+                cw.startBlock("private static boolean isBlank_(CharSequence s) {");
+                cw.println("for (int i = 0; i < s.length(); i++) if (!Character.isWhitespace(s.charAt(i))) return false;");
+                cw.println("return true;");
+                cw.endBlock("}");
+            }
+            cw.endBlock("}");
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -1,53 +1,95 @@
 package org.docero.dgen.processor;
 
-import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.Filer;
+import javax.lang.model.element.Element;
 import javax.tools.JavaFileObject;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.Writer;
 
+/**
+ * Writer of generated class. Source is rendered to memory, so it may be done outside of compiler thread,
+ * and written to file created by Filer with single write on compiler thread.
+ */
 public class JavaClassWriter implements Closeable {
-    private final JavaFileObject sourceFile;
-    private final Writer writer;
+    private final String className;
+    private final StringBuilder source = new StringBuilder(8192);
     private static final String blockOffset = "    ";
 
     private int blockIndent = 0;
     private boolean lineStart = true;
+    private DGenStats.Record statistics;
 
-    public JavaClassWriter(ProcessingEnvironment environment, String fullPath) throws IOException {
-        sourceFile = environment.getFiler().createSourceFile(fullPath);
-        writer = sourceFile.openWriter();
+    /**
+     * @param className qualified name of generated class
+     */
+    public JavaClassWriter(String className) {
+        this.className = className;
     }
 
+    /**
+     * @param statistics record of compilation statistics receiving size of rendered source, may be null
+     */
+    void setStatistics(DGenStats.Record statistics) {
+        this.statistics = statistics;
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    /**
+     * Completes rendering of source
+     */
     @Override
-    public void close() throws IOException {
-        writer.flush();
-        writer.close();
+    public void close() {
+        if (statistics == null) return;
+        long bytes = 0, lines = 0;
+        for (int i = 0; i < source.length(); i++) {
+            char c = source.charAt(i);
+            if (c == '\n') lines++;
+            bytes += c < 0x80 ? 1 : c < 0x800 || Character.isSurrogate(c) ? 2 : 3;
+        }
+        statistics.addFile(bytes, lines);
+    }
+
+    /**
+     * Writes rendered source to new source file, must be called on compiler thread
+     *
+     * @param filer               filer of processing environment
+     * @param originatingElements prototypes of generated class, used by incremental compilation
+     * @throws IOException if file can not be created or written
+     */
+    void writeTo(Filer filer, Element... originatingElements) throws IOException {
+        JavaFileObject sourceFile = filer.createSourceFile(className, originatingElements);
+        try (Writer writer = sourceFile.openWriter()) {
+            writer.write(source.toString());
+        }
     }
 
-    public void print(String s) throws IOException {
+    public void print(String s) {
         for (int i = 0; lineStart && i < blockIndent; i++)
-            writer.write(blockOffset);
-        writer.write(s);
+            source.append(blockOffset);
+        source.append(s);
         lineStart = s.charAt(s.length() - 1) == '\n';
     }
 
-    public void println(String s) throws IOException {
+    public void println(String s) {
         if (s != null && s.length() > 0) {
             for (int i = 0; lineStart && i < blockIndent; i++)
-                writer.write(blockOffset);
-            writer.write(s);
+                source.append(blockOffset);
+            source.append(s);
         }
-        writer.write("\n");
+        source.append('\n');
         lineStart = true;
     }
 
-    public void startBlock(String s) throws IOException {
+    public void startBlock(String s) {
         this.println(s);
         blockIndent++;
     }
 
-    public void endBlock(String s) throws IOException {
+    public void endBlock(String s) {
         blockIndent--;
         this.println(s);
     }
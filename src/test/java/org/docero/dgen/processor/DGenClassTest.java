@@ -0,0 +1,104 @@
+package org.docero.dgen.processor;
+
+import org.docero.dgen.DGenBean;
+import org.junit.Test;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.TypeElement;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks models of prototypes read from sources compiled in memory, without generation of classes
+ */
+public class DGenClassTest {
+    private static final String PROTOTYPES = "package p;\n" +
+            "import org.docero.dgen.*;\n" +
+            "abstract class DGen {\n" +
+            "    @DGenBean\n" +
+            "    @DGenLayout(hot = {\"price\", \"count\"})\n" +
+            "    abstract class LayoutBean {\n" +
+            "        boolean active;\n" +
+            "        String name;\n" +
+            "        byte flags;\n" +
+            "        long id;\n" +
+            "        int count;\n" +
+            "        double price;\n" +
+            "        char grade;\n" +
+            "        java.util.List<String> tags;\n" +
+            "        short rank;\n" +
+            "        float ratio;\n" +
+            "    }\n" +
+            "    @DGenBean\n" +
+            "    abstract class PlainBean {\n" +
+            "        boolean active;\n" +
+            "        String name;\n" +
+            "        long id;\n" +
+            "    }\n" +
+            "}\n";
+
+    /**
+     * @return beans read from prototypes by simple name
+     */
+    private static List<DGenClass> readBeans() throws Exception {
+        List<DGenClass> beans = new ArrayList<>();
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        JavaFileObject source = new SimpleJavaFileObject(URI.create("string:///p/DGen.java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return PROTOTYPES;
+            }
+        };
+        String classPath = new File(DGenBean.class.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+        JavaCompiler.CompilationTask task = compiler.getTask(null, null, null,
+                Arrays.asList("-proc:only", "-classpath", classPath), null, Collections.singletonList(source));
+        task.setProcessors(Collections.singletonList(new AbstractProcessor() {
+            @Override
+            public Set<String> getSupportedAnnotationTypes() {
+                return Collections.singleton(DGenBean.class.getName());
+            }
+
+            @Override
+            public SourceVersion getSupportedSourceVersion() {
+                return SourceVersion.latestSupported();
+            }
+
+            @Override
+            public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+                for (Element element : roundEnv.getElementsAnnotatedWith(DGenBean.class))
+                    beans.add(DGenClass.readBean((TypeElement) element));
+                return true;
+            }
+        }));
+        assertTrue(task.call());
+        return beans;
+    }
+
+    private static DGenClass bean(List<DGenClass> beans, String simpleName) {
+        return beans.stream().filter(b -> b.getSimpleName().equals(simpleName)).findAny()
+                .orElseThrow(IllegalStateException::new);
+    }
+
+    @Test
+    public void fieldOrder() throws Exception {
+        List<DGenClass> beans = readBeans();
+        assertEquals(Arrays.asList("price", "count", "id", "ratio", "name", "tags", "grade", "rank", "active", "flags"),
+                bean(beans, "LayoutBean").fieldOrder());
+        assertEquals(Arrays.asList("active", "name", "id"), bean(beans, "PlainBean").fieldOrder());
+    }
+}
@@ -1,10 +1,23 @@
 package org.docero.dgen.tests;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import org.docero.dgen.*;
 
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.PositiveOrZero;
+import javax.validation.constraints.Size;
+
 import java.io.Serializable;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings("unused")
 abstract class DGen {
@@ -50,4 +63,309 @@ abstract class DGen {
         @JsonIgnore
         abstract List<String> getFsl();
     }
+
+    @DGenBean
+    @DGenBinary
+    abstract class BinaryBean {
+        @DGenUnmodifiable
+        int id;
+        Integer count;
+        long stamp;
+        Long ref;
+        double ratio;
+        Boolean flag;
+        String name;
+        TimeUnit unit;
+        @DGenUnmodifiable(unmodifiableCollection = true)
+        List<String> tags;
+        Map<String, Long> totals;
+        transient String cached;
+    }
+
+    @DGenBean
+    @DGenJson
+    abstract class JsonBean {
+        @DGenUnmodifiable
+        long id;
+        @JsonProperty("display_name")
+        String name;
+        Double price;
+        float weight;
+        char grade;
+        TimeUnit unit;
+        List<Integer> counts;
+        Map<TimeUnit, String> labels;
+        @JsonIgnore
+        String secret;
+        transient String cached;
+    }
+
+    @DGenBean
+    @DGenColumnar
+    abstract class ColumnarBean {
+        @DGenUnmodifiable
+        long id;
+        int quantity;
+        Integer discount;
+        Double price;
+        boolean active;
+        Boolean enabled;
+        String code;
+        List<String> tags;
+    }
+
+    @DGenBean
+    @DGenEquals
+    abstract class ValueBean {
+        @DGenUnmodifiable
+        String code;
+        transient int uses;
+    }
+
+    @DGenBean
+    @DGenEquals
+    abstract class EqualsBean {
+        long id;
+        double rate;
+        String code;
+        List<String> tags;
+    }
+
+    @DGenBean
+    @DGenInterned
+    @DGenJson
+    abstract class CurrencyBean {
+        @DGenUnmodifiable
+        String code;
+        @DGenUnmodifiable
+        @DGenFromBuilder
+        Integer digits;
+    }
+
+    @DGenBean(reusableBuilder = true)
+    @DGenUnmodifiable
+    abstract class EventBean {
+        @DGenRequired
+        long id;
+        String name;
+        @DGenUnmodifiable(unmodifiableCollection = true)
+        List<String> tags;
+    }
+
+    @DGenBean
+    @DGenEquals
+    abstract class SeriesBean {
+        @DGenUnmodifiable(primitiveCollection = true)
+        List<Integer> counts;
+        @DGenUnmodifiable(primitiveCollection = true)
+        List<Long> stamps;
+        @DGenUnmodifiable(primitiveCollection = true)
+        List<Double> values;
+        @DGenUnmodifiable(primitiveCollection = true)
+        Map<Long, String> names;
+    }
+
+    @DGenBean
+    @DGenDirty
+    @DGenAccessors
+    abstract class AccountBean {
+        @DGenUnmodifiable
+        long id;
+        String owner;
+        long balance;
+        Integer limit;
+        List<String> tags;
+        Long credit;
+        transient int hits;
+    }
+
+    @DGenBean
+    @DGenMapping({OrderView.class, OrderRecord.class})
+    abstract class OrderEntity {
+        long id;
+        int quantity;
+        Integer discount;
+        String customer;
+        List<String> notes;
+    }
+
+    @DGenBean
+    abstract class OrderView {
+        @DGenUnmodifiable
+        @DGenRequired
+        long id;
+        Long quantity;
+        int discount;
+        String customer;
+        double total;
+    }
+
+    @DGenInterface
+    abstract class OrderRecord {
+        @DGenUnmodifiable
+        long id;
+        long quantity;
+        java.util.Collection<String> notes;
+    }
+
+    @DGenBean
+    @DGenLayout(hot = {"price", "count"})
+    abstract class LayoutBean {
+        boolean active;
+        String name;
+        byte flags;
+        long id;
+        int count;
+        double price;
+        char grade;
+        List<String> tags;
+    }
+
+    @DGenBean
+    @DGenConcurrent
+    abstract class CounterBean {
+        @DGenUnmodifiable
+        String key;
+        long hits;
+        int active;
+        String lastUser;
+        List<String> users;
+        boolean closed;
+        Integer level;
+    }
+
+    interface Totals {
+        java.util.concurrent.atomic.AtomicInteger COMPUTED = new java.util.concurrent.atomic.AtomicInteger();
+
+        List<Integer> getAmounts();
+
+        default long computeTotal() {
+            COMPUTED.incrementAndGet();
+            long total = 0;
+            for (Integer amount : getAmounts()) total += amount;
+            return total;
+        }
+    }
+
+    @DGenBean
+    @DGenUnmodifiable
+    @DGenEquals
+    abstract class InvoiceBean implements Totals {
+        List<Integer> amounts;
+        @DGenLazy
+        long total;
+    }
+
+    @DGenBean
+    abstract class CartBean implements Totals {
+        List<Integer> amounts;
+        @DGenLazy("computeTotal")
+        long sum;
+    }
+
+    @DGenBean
+    @DGenMapped
+    abstract class TradeBean {
+        @DGenUnmodifiable
+        long id;
+        @DGenMaxLength(8)
+        String symbol;
+        double price;
+        Integer quantity;
+        Boolean settled;
+        TimeUnit unit;
+        char side;
+        transient String note;
+    }
+
+    @DGenBean
+    @DGenJdbc
+    @DGenEquals
+    abstract class PersonRow {
+        @DGenUnmodifiable
+        long id;
+        String firstName;
+        Integer age;
+        Double score;
+        boolean active;
+        TimeUnit unit;
+        java.math.BigDecimal balance;
+        transient String cache;
+    }
+
+    @DGenBean
+    abstract class QuoteBean {
+        long id;
+        @DGenSortKey(1)
+        float price;
+        @DGenSortKey(descending = true)
+        short venue;
+        @DGenSortKey(2)
+        boolean bid;
+    }
+
+    @DGenBean
+    abstract class SequenceBean {
+        @DGenSortKey(descending = true)
+        long sequence;
+        String name;
+    }
+
+    @DGenBean
+    abstract class InstrumentRef {
+        @DGenUnmodifiable
+        @DGenIndexed(unique = true)
+        long id;
+        @DGenIndexed(unique = true)
+        String symbol;
+        @DGenIndexed
+        int sector;
+        @DGenIndexed
+        String venue;
+        double price;
+    }
+
+    @DGenBean
+    abstract class SignupForm {
+        @NotBlank
+        @Size(max = 16)
+        String login;
+        @NotNull
+        @Pattern(regexp = "(?i)[a-z.]+@[a-z.]+")
+        String email;
+        @Min(18)
+        @Max(value = 150, message = "is not realistic")
+        int age;
+        @DecimalMin(value = "0", inclusive = false)
+        java.math.BigDecimal deposit;
+        @Size(min = 1, max = 3)
+        List<String> tags;
+        @AssertTrue
+        boolean accepted;
+        @PositiveOrZero
+        Long referrer;
+    }
+
+    @DGenBean
+    @DGenCsv(delimiter = ';', header = true)
+    abstract class TickRow {
+        @DGenUnmodifiable
+        long seq;
+        String symbol;
+        double price;
+        Float size;
+        int venue;
+        boolean buy;
+        TimeUnit unit;
+        Character flag;
+        java.math.BigDecimal fee;
+        transient String note;
+    }
+
+    @DGenBean
+    @DGenDirty
+    abstract class ReceiptBean {
+        String number;
+        java.math.BigDecimal amount;
+    }
 }
@@ -0,0 +1,69 @@
+package org.docero.dgen.tests;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Shallow size of instances measured by field offsets in running JVM, a local equivalent of JOL.
+ * <p>Header size is taken from offset of the single field of probe class, objects are aligned by 8 bytes.</p>
+ */
+final class Footprint {
+    private static final sun.misc.Unsafe UNSAFE;
+    private static final long HEADER;
+
+    static {
+        try {
+            Field f = sun.misc.Unsafe.class.getDeclaredField("theUnsafe");
+            f.setAccessible(true);
+            UNSAFE = (sun.misc.Unsafe) f.get(null);
+            HEADER = UNSAFE.objectFieldOffset(Probe.class.getDeclaredField("b"));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @SuppressWarnings("unused")
+    private static class Probe {
+        byte b;
+    }
+
+    final Class<?> type;
+    final long header;
+    final long fields;
+    final long shallowSize;
+    final long padding;
+
+    private Footprint(Class<?> type) {
+        this.type = type;
+        long end = HEADER, used = 0;
+        for (Class<?> c = type; c != null; c = c.getSuperclass())
+            for (Field field : c.getDeclaredFields())
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    long size = sizeOf(field.getType());
+                    used += size;
+                    end = Math.max(end, UNSAFE.objectFieldOffset(field) + size);
+                }
+        this.header = HEADER;
+        this.fields = used;
+        this.shallowSize = (end + 7) & ~7L;
+        this.padding = shallowSize - HEADER - used;
+    }
+
+    static Footprint of(Class<?> type) {
+        return new Footprint(type);
+    }
+
+    private static long sizeOf(Class<?> type) {
+        if (type == long.class || type == double.class) return 8;
+        if (type == int.class || type == float.class) return 4;
+        if (type == short.class || type == char.class) return 2;
+        if (type == byte.class || type == boolean.class) return 1;
+        return UNSAFE.arrayIndexScale(Object[].class);
+    }
+
+    @Override
+    public String toString() {
+        return type.getSimpleName() + ": " + shallowSize + " bytes (header " + header +
+                ", fields " + fields + ", padding " + padding + ")";
+    }
+}
@@ -1,11 +1,37 @@
 package org.docero.dgen.tests;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.runner.RunWith;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
 
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 @RunWith(SpringJUnit4ClassRunner.class)
 @ContextConfiguration(classes = TestsConfig.class)
@@ -19,4 +45,751 @@ public class Test {
         assertEquals(Integer.valueOf(1), bean.getF2());
         assertEquals(Long.valueOf(2), bean.getF4());
     }
+
+    @org.junit.Test
+    public void binaryCodec() {
+        BinaryBean bean = new BinaryBean(7, Arrays.asList("a", null, "ёжик \uD83D\uDE00"));
+        bean.setCount(3);
+        bean.setStamp(-1L);
+        bean.setRatio(0.5);
+        bean.setFlag(false);
+        bean.setName("имя");
+        bean.setUnit(TimeUnit.SECONDS);
+        bean.setTotals(Collections.singletonMap("x", null));
+        bean.setCached("not written");
+
+        ByteBuffer buf = ByteBuffer.allocate(bean.binarySize());
+        bean.writeTo(buf);
+        assertEquals(0, buf.remaining());
+        buf.flip();
+        BinaryBean copy = BinaryBean.readFrom(buf);
+
+        assertEquals(0, buf.remaining());
+        assertEquals(7, copy.getId());
+        assertEquals(Integer.valueOf(3), copy.getCount());
+        assertEquals(-1L, copy.getStamp());
+        assertNull(copy.getRef());
+        assertEquals(0.5, copy.getRatio(), 0);
+        assertEquals(Boolean.FALSE, copy.getFlag());
+        assertEquals("имя", copy.getName());
+        assertEquals(TimeUnit.SECONDS, copy.getUnit());
+        assertEquals(bean.getTags(), copy.getTags());
+        assertEquals(bean.getTotals(), copy.getTotals());
+        assertNull(copy.getCached());
+    }
+
+    @org.junit.Test
+    public void jsonCodec() throws IOException {
+        JsonBean bean = new JsonBean(42L);
+        bean.setName("\"quoted\"\n");
+        bean.setWeight(0.1f);
+        bean.setGrade('A');
+        bean.setUnit(TimeUnit.HOURS);
+        bean.setCounts(Arrays.asList(1, null, -3));
+        bean.setLabels(Collections.singletonMap(TimeUnit.DAYS, "d"));
+        bean.setSecret("secret");
+        bean.setCached("cached");
+
+        String json = JsonBeanJson.toJson(bean);
+        JsonNode tree = new ObjectMapper().readTree(json);
+        assertEquals(42L, tree.get("id").asLong());
+        assertEquals(bean.getName(), tree.get("display_name").asText());
+        assertEquals("0.1", tree.get("weight").asText());
+        assertFalse(tree.has("secret"));
+        assertFalse(tree.has("cached"));
+
+        JsonBean copy = JsonBeanJson.read(new StringReader(
+                "{\"unknown\": {\"a\": [1, 2.5e3, null, true]}, " + json.substring(1)));
+        assertEquals(42L, copy.getId());
+        assertEquals(bean.getName(), copy.getName());
+        assertNull(copy.getPrice());
+        assertEquals(0.1f, copy.getWeight(), 0f);
+        assertEquals('A', copy.getGrade());
+        assertEquals(TimeUnit.HOURS, copy.getUnit());
+        assertEquals(bean.getCounts(), copy.getCounts());
+        assertEquals(bean.getLabels(), copy.getLabels());
+        assertNull(copy.getSecret());
+        assertNull(copy.getCached());
+        String weight = "1.00000017881393432617187499";
+        assertEquals(Float.parseFloat(weight), JsonBeanJson.read(new StringReader(
+                "{\"id\": 1, \"weight\": " + weight + "}")).getWeight(), 0f);
+    }
+
+    @org.junit.Test
+    public void columnarStore() {
+        ColumnarBeanColumns columns = new ColumnarBeanColumns(2);
+        for (int i = 0; i < 100; i++) {
+            ColumnarBeanColumns.Cursor row = columns.append(i);
+            row.setQuantity(i * 2);
+            row.setDiscount(i % 2 == 0 ? null : i);
+            row.setCode("c" + i);
+            if (i % 3 == 0) row.setEnabled(i % 2 == 0);
+        }
+        ColumnarBean bean = new ColumnarBean(100L);
+        bean.setPrice(1.5);
+        bean.setEnabled(Boolean.TRUE);
+        bean.setTags(Collections.singletonList("t"));
+        assertEquals(100, columns.add(bean));
+        assertEquals(101, columns.size());
+
+        long total = 0;
+        int[] quantity = columns.quantityColumn();
+        for (int i = 0; i < columns.size(); i++) total += quantity[i];
+        assertEquals(9900L, total);
+
+        int nulls = 0;
+        ColumnarBeanColumns.Cursor cursor = columns.cursor();
+        while (cursor.next())
+            if (cursor.getDiscount() == null) nulls++;
+        assertEquals(51, nulls);
+
+        assertEquals(Integer.valueOf(3), cursor.at(3).getDiscount());
+        assertTrue(columns.isDiscountNull(4));
+        ColumnarBean copy = columns.get(100);
+        assertEquals(100L, copy.getId());
+        assertEquals(Double.valueOf(1.5), copy.getPrice());
+        assertEquals(bean.getTags(), copy.getTags());
+        assertNull(columns.get(99).getPrice());
+        assertEquals("c99", columns.get(99).getCode());
+        assertNull(columns.get(1).getEnabled());
+        assertEquals(Boolean.FALSE, columns.get(3).getEnabled());
+        assertEquals(Boolean.TRUE, columns.get(6).getEnabled());
+        assertEquals(Boolean.TRUE, columns.get(100).getEnabled());
+    }
+
+    @org.junit.Test
+    public void equalsAndHashCode() {
+        EqualsBean bean = new EqualsBean();
+        bean.setId(1L);
+        bean.setRate(Double.NaN);
+        bean.setTags(Collections.singletonList("t"));
+        EqualsBean same = new EqualsBean();
+        same.setId(1L);
+        same.setRate(Double.NaN);
+        same.setTags(Collections.singletonList("t"));
+
+        assertEquals(bean, same);
+        assertEquals(bean.hashCode(), same.hashCode());
+        same.setCode("c");
+        assertNotEquals(bean, same);
+        assertEquals("EqualsBean{", bean.toString().substring(0, 11));
+        assertTrue(bean.toString().contains("rate=NaN"));
+        assertTrue(bean.toString().contains("code=null"));
+
+        ValueBean value = new ValueBean("a");
+        value.setUses(10);
+        assertEquals(new ValueBean("a"), value);
+        assertEquals(new ValueBean("a").hashCode(), value.hashCode());
+        assertEquals(value.hashCode(), value.hashCode());
+        assertNotEquals(new ValueBean("b"), value);
+    }
+
+    @org.junit.Test
+    public void internedBuild() {
+        CurrencyBean.AbstractBuilder builder = new CurrencyBean.AbstractBuilder() {
+            @Override
+            Integer getDigits() {
+                return 2;
+            }
+        };
+        long misses = CurrencyBean.internMisses();
+        CurrencyBean usd = builder.code("USD").build();
+        CurrencyBean same = builder.code("USD").build();
+        assertSame(usd, same);
+        assertSame(usd, CurrencyBean.intern(usd));
+        assertSame(usd, CurrencyBean.of("USD", 2));
+        assertEquals(misses + 1, CurrencyBean.internMisses());
+        assertTrue(CurrencyBean.internHits() >= 2);
+        assertTrue(CurrencyBean.internSize() >= 1);
+        assertNotEquals(usd, builder.code("EUR").build());
+        try {
+            assertSame(usd, CurrencyBeanJson.read(new StringReader(CurrencyBeanJson.toJson(usd))));
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @org.junit.Test
+    public void withAndToBuilder() {
+        EventBean event = new EventBean(1L, "created", new ArrayList<>(Arrays.asList("a", "b")));
+        assertSame(event, event.withName(event.getName()));
+        assertSame(event, event.withTags(event.getTags()));
+
+        EventBean renamed = event.withName("updated");
+        assertEquals("updated", renamed.getName());
+        assertEquals(1L, renamed.getId());
+        assertSame(event.getTags(), renamed.getTags());
+        assertEquals("created", event.getName());
+
+        EventBean copy = event.toBuilder().id(2L).build();
+        assertEquals(2L, copy.getId());
+        assertEquals("created", copy.getName());
+        assertSame(event.getTags(), copy.getTags());
+    }
+
+    @org.junit.Test
+    public void primitiveCollections() {
+        List<Integer> counts = new ArrayList<>(Arrays.asList(3, 1, 2));
+        Map<Long, String> names = new LinkedHashMap<>();
+        for (long i = 0; i < 100; i++) names.put(i * 1000003L, "n" + i);
+        SeriesBean series = new SeriesBean(counts, Arrays.asList(10L, 20L), Arrays.asList(0.5, Double.NaN), names);
+        counts.set(0, 100);
+        names.clear();
+
+        assertEquals(3, series.getCounts().getInt(0));
+        assertEquals(Arrays.asList(3, 1, 2), series.getCounts());
+        assertEquals(Arrays.asList(3, 1, 2).hashCode(), series.getCounts().hashCode());
+        assertEquals(6, series.getCounts().intStream().sum());
+        assertEquals(20L, series.getStamps().getLong(1));
+        assertEquals(1, series.getValues().indexOf(Double.NaN));
+        assertEquals(100, series.getNames().size());
+        assertEquals("n42", series.getNames().get(42 * 1000003L));
+        assertEquals("n42", series.getNames().get((Object) (42 * 1000003L)));
+        assertNull(series.getNames().get(1L));
+        assertEquals(0L, series.getNames().keyAt(0));
+        assertSame(series.getCounts(), SeriesBean.IntList.copyOf(series.getCounts()));
+
+        SeriesBean copy = series.withStamps(Arrays.asList(10L, 20L));
+        assertEquals(series, copy);
+        assertSame(series.getNames(), copy.getNames());
+        try {
+            series.getCounts().add(4);
+            fail();
+        } catch (UnsupportedOperationException ignore) {
+        }
+    }
+
+    @org.junit.Test
+    public void reusableBuilder() {
+        EventBean.Builder builder = EventBean.localBuilder();
+        EventBean first = builder.id(1L).name("first").tags(Collections.emptyList()).build();
+        assertSame(builder, EventBean.localBuilder());
+        EventBean second = EventBean.localBuilder().id(2L).tags(Collections.emptyList()).build();
+        assertEquals("first", first.getName());
+        assertNull(second.getName());
+        assertEquals(2L, second.getId());
+        try {
+            EventBean.localBuilder().name("no id").tags(Collections.emptyList()).build();
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("required properties are not set: id", e.getMessage());
+        }
+    }
+
+    @org.junit.Test
+    public void dirtyDelta() {
+        AccountBean account = new AccountBean(1L);
+        assertFalse(account.isDirty());
+        account.setBalance(100L);
+        account.setTags(Arrays.asList("a", "b"));
+        account.setHits(5);
+        assertEquals(0xAL, account.dirtyMask());
+
+        ByteBuffer buf = ByteBuffer.allocate(account.deltaSize());
+        account.writeDelta(buf);
+        assertEquals(0, buf.remaining());
+        buf.flip();
+
+        AccountBean replica = new AccountBean(1L);
+        replica.setOwner("owner");
+        replica.clearDirty();
+        replica.applyDelta(buf);
+        assertFalse(replica.isDirty());
+        assertEquals("owner", replica.getOwner());
+        assertEquals(100L, replica.getBalance());
+        assertEquals(Arrays.asList("a", "b"), replica.getTags());
+        assertEquals(0, replica.getHits());
+
+        account.clearDirty();
+        assertEquals(8, account.deltaSize());
+
+        buf = ByteBuffer.allocate(AccountBeanCodec.sizeOf(account));
+        AccountBeanCodec.write(account, buf);
+        buf.flip();
+        AccountBean decoded = AccountBeanCodec.read(buf);
+        assertEquals(100L, decoded.getBalance());
+        assertEquals(0L, decoded.dirtyMask());
+    }
+
+    @org.junit.Test
+    public void dirtyWithoutCodec() {
+        ReceiptBean receipt = new ReceiptBean();
+        receipt.setAmount(java.math.BigDecimal.TEN);
+        assertEquals(0x2L, receipt.dirtyMask());
+        receipt.setNumber("A-1");
+        assertTrue(receipt.isDirty());
+        receipt.clearDirty();
+        assertFalse(receipt.isDirty());
+    }
+
+    @org.junit.Test
+    public void indexedAccessors() {
+        assertEquals(7, AccountBean.propertyCount());
+        int balance = AccountBean.propertyIndex("balance");
+        assertEquals("balance", AccountBean.propertyName(balance));
+        assertEquals(long.class, AccountBean.propertyType(balance));
+        assertEquals(List.class, AccountBean.propertyType(AccountBean.propertyIndex("tags")));
+        assertEquals(-1, AccountBean.propertyIndex("missing"));
+        assertFalse(AccountBean.isPropertyWritable(AccountBean.propertyIndex("id")));
+
+        AccountBean account = new AccountBean(7L);
+        account.setLong(balance, 250L);
+        assertEquals(250L, account.getBalance());
+        assertEquals(250L, account.getLong(balance));
+        assertEquals(250d, account.getDouble(balance), 0d);
+        assertEquals(7L, account.get(0));
+        assertEquals(0x2L, account.dirtyMask());
+
+        int limit = AccountBean.propertyIndex("limit");
+        account.setInt(limit, 10);
+        assertEquals(Integer.valueOf(10), account.getLimit());
+        assertEquals(10L, account.getLong(limit));
+        try {
+            account.getInt(0);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        try {
+            account.getBoolean(balance);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        int credit = AccountBean.propertyIndex("credit");
+        account.setInt(credit, 5);
+        assertEquals(Long.valueOf(5L), account.getCredit());
+        account.setLong(credit, 6L);
+        assertEquals(Long.valueOf(6L), account.getCredit());
+        try {
+            account.setDouble(credit, 1.5);
+            fail();
+        } catch (IllegalArgumentException ignore) {
+        }
+        account.set(AccountBean.propertyIndex("owner"), "me");
+        assertEquals("me", account.getOwner());
+        try {
+            account.set(0, 1L);
+            fail();
+        } catch (UnsupportedOperationException ignore) {
+        }
+    }
+
+    @org.junit.Test
+    public void generatedMapper() {
+        OrderEntity entity = new OrderEntity();
+        entity.setId(5L);
+        entity.setQuantity(3);
+        entity.setCustomer("acme");
+        entity.setNotes(Collections.singletonList("fragile"));
+
+        OrderView view = OrderEntityMapper.toOrderView(entity);
+        assertEquals(5L, view.getId());
+        assertEquals(Long.valueOf(3L), view.getQuantity());
+        assertEquals(0, view.getDiscount());
+        assertEquals("acme", view.getCustomer());
+        assertNull(OrderEntityMapper.toOrderView(null));
+
+        entity.setDiscount(15);
+        entity.setQuantity(4);
+        OrderEntityMapper.copy(entity, view);
+        assertEquals(15, view.getDiscount());
+        assertEquals(Long.valueOf(4L), view.getQuantity());
+        assertEquals(5L, view.getId());
+    }
+
+    @org.junit.Test
+    public void footprintReport() {
+        // order of fields is checked by processor tests, sizes depend on JVM and are only reported
+        for (Class<?> type : Arrays.asList(SimpleBean.class, AccountBean.class, EventBean.class, LayoutBean.class))
+            System.out.println(Footprint.of(type));
+        // fields of layout are packed without gaps, object is only aligned by 8 bytes
+        Footprint layout = Footprint.of(LayoutBean.class);
+        assertEquals((layout.header + layout.fields + 7) & ~7L, layout.shallowSize);
+    }
+
+    @org.junit.Test
+    public void concurrentUpdates() throws InterruptedException {
+        CounterBean counter = new CounterBean("page");
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    counter.getAndAddHits(1);
+                    counter.updateAndGetActive(a -> a + 2);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(40000L, counter.getHits());
+        assertEquals(80000, counter.getActive());
+
+        assertTrue(counter.compareAndSetLastUser(null, "alice"));
+        assertFalse(counter.compareAndSetLastUser(null, "bob"));
+        assertEquals("alice", counter.getAndSetLastUser("carol"));
+        counter.setLevel(1000);
+        assertTrue(counter.compareAndSetLevel(1000, 1001));
+        assertFalse(counter.compareAndSetLevel(1000, 1002));
+        assertEquals(Integer.valueOf(1001), counter.getLevel());
+        counter.lazySetUsers(Collections.singletonList("carol"));
+        assertEquals(Arrays.asList("carol", "dave"), counter.updateAndGetUsers(u -> {
+            List<String> users = new ArrayList<>(u);
+            users.add("dave");
+            return users;
+        }));
+    }
+
+    @org.junit.Test
+    public void lazyProperties() {
+        int computed = DGen.Totals.COMPUTED.get();
+        InvoiceBean invoice = new InvoiceBean(Arrays.asList(10, 20, 30));
+        assertEquals(computed, DGen.Totals.COMPUTED.get());
+        assertEquals(60L, invoice.getTotal());
+        assertEquals(60L, invoice.getTotal());
+        assertEquals(computed + 1, DGen.Totals.COMPUTED.get());
+        assertEquals(new InvoiceBean(Arrays.asList(10, 20, 30)), invoice);
+
+        CartBean cart = new CartBean();
+        cart.setAmounts(Arrays.asList(1, 2));
+        assertEquals(3L, cart.getSum());
+        assertEquals(3L, cart.getSum());
+        cart.setAmounts(Arrays.asList(5));
+        assertEquals(5L, cart.getSum());
+        assertEquals(computed + 3, DGen.Totals.COMPUTED.get());
+    }
+
+    @org.junit.Test
+    public void mappedStore() throws IOException {
+        Path file = Files.createTempFile("trades", ".bin");
+        Files.delete(file);
+        try {
+            try (TradeBeanMappedStore store = TradeBeanMappedStore.open(file)) {
+                for (int i = 0; i < 100; i++) {
+                    TradeBean trade = new TradeBean(i);
+                    trade.setSymbol(i % 2 == 0 ? "ABC" : "\u0416\u0417\u0418");
+                    trade.setPrice(i * 1.5);
+                    trade.setQuantity(i % 3 == 0 ? null : i);
+                    trade.setSettled(i % 5 == 0 ? null : i % 2 == 0);
+                    trade.setUnit(i % 7 == 0 ? null : TimeUnit.SECONDS);
+                    trade.setSide('B');
+                    trade.setNote("not stored");
+                    assertEquals(i, store.add(trade));
+                }
+                try {
+                    TradeBean trade = new TradeBean(100);
+                    trade.setSymbol("TOO LONG SYMBOL");
+                    store.add(trade);
+                    fail();
+                } catch (IllegalArgumentException ignored) {
+                }
+            }
+            try (TradeBeanMappedStore store = TradeBeanMappedStore.open(file)) {
+                assertEquals(100, store.size());
+                TradeBean trade = store.get(4);
+                assertEquals(4L, trade.getId());
+                assertEquals("ABC", trade.getSymbol());
+                assertEquals(6.0, trade.getPrice(), 0);
+                assertEquals(Integer.valueOf(4), trade.getQuantity());
+                assertEquals(Boolean.TRUE, trade.getSettled());
+                assertEquals(TimeUnit.SECONDS, trade.getUnit());
+                assertEquals('B', trade.getSide());
+                assertNull(trade.getNote());
+
+                TradeBeanMappedStore.Cursor cursor = store.cursor().at(21);
+                assertEquals("\u0416\u0417\u0418", cursor.getSymbol());
+                assertNull(cursor.getQuantity());
+                assertEquals(Boolean.FALSE, cursor.getSettled());
+                assertNull(cursor.getUnit());
+                assertNull(store.cursor().at(15).getSettled());
+
+                trade.setSymbol(null);
+                store.set(4, trade);
+                assertNull(cursor.at(4).getSymbol());
+
+                long ids = 0;
+                for (cursor = store.cursor(); cursor.next(); ) ids += cursor.getId();
+                assertEquals(4950L, ids);
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @org.junit.Test
+    public void jdbcMapper() throws SQLException {
+        try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:jdbcMapper");
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE person_row (id BIGINT PRIMARY KEY, first_name VARCHAR(50), " +
+                    "age INT, score DOUBLE, active BOOLEAN, unit VARCHAR(20), balance DECIMAL(10, 2))");
+            List<PersonRow> persons = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                PersonRow person = new PersonRow(i);
+                person.setFirstName("name" + i);
+                person.setAge(i % 3 == 0 ? null : 20 + i);
+                person.setScore(i % 4 == 0 ? null : i * 0.5);
+                person.setActive(i % 2 == 0);
+                person.setUnit(i % 5 == 0 ? null : TimeUnit.DAYS);
+                person.setBalance(new java.math.BigDecimal(i + ".25"));
+                person.setCache("not stored");
+                persons.add(person);
+            }
+            assertEquals(25, PersonRowJdbc.insert(connection, persons, 10));
+
+            List<PersonRow> read;
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM person_row ORDER BY id")) {
+                read = PersonRowJdbc.readAll(rs);
+            }
+            assertEquals(25, read.size());
+            assertEquals(persons, read);
+            assertNull(read.get(0).getCache());
+            assertNull(read.get(3).getAge());
+            assertEquals(Integer.valueOf(24), read.get(4).getAge());
+            assertNull(read.get(4).getScore());
+            assertNull(read.get(5).getUnit());
+
+            PersonRowJdbc.RowMapper mapper = new PersonRowJdbc.RowMapper();
+            try (ResultSet rs = statement.executeQuery("SELECT first_name AS firstName, id FROM person_row WHERE id = 7")) {
+                assertTrue(rs.next());
+                PersonRow person = mapper.mapRow(rs, 0);
+                assertEquals(7L, person.getId());
+                assertEquals("name7", person.getFirstName());
+                assertNull(person.getAge());
+                assertFalse(person.getActive());
+            }
+        }
+    }
+
+    @org.junit.Test
+    public void sortKeys() {
+        java.util.Random random = new java.util.Random(21);
+        float[] prices = {0.0f, -0.0f, Float.NaN, Float.NEGATIVE_INFINITY, Float.POSITIVE_INFINITY, -1.5f, 2.25f};
+        QuoteBean[] quotes = new QuoteBean[5000];
+        for (int i = 0; i < quotes.length; i++) {
+            QuoteBean quote = new QuoteBean();
+            quote.setId(i);
+            quote.setPrice(i % 10 == 0 ? prices[random.nextInt(prices.length)] : random.nextInt(2000) / 8f - 125);
+            quote.setVenue((short) (random.nextInt(7) - 3));
+            quote.setBid(random.nextBoolean());
+            quotes[i] = quote;
+        }
+        java.util.Comparator<QuoteBean> expected = java.util.Comparator
+                .comparing(QuoteBean::getVenue, java.util.Comparator.reverseOrder())
+                .thenComparing(QuoteBean::getPrice)
+                .thenComparing(QuoteBean::getBid);
+        QuoteBean[] sorted = quotes.clone();
+        Arrays.sort(sorted, expected);
+        QuoteBean[] radix = quotes.clone();
+        QuoteBeanSorter.sort(radix);
+        assertTrue(Arrays.equals(sorted, radix));
+        QuoteBean[] compared = quotes.clone();
+        Arrays.sort(compared, QuoteBeanSorter.COMPARATOR);
+        assertTrue(Arrays.equals(sorted, compared));
+        for (int i = 1; i < radix.length; i++)
+            assertTrue(QuoteBeanSorter.key(radix[i - 1]) <= QuoteBeanSorter.key(radix[i]));
+
+        List<QuoteBean> list = new ArrayList<>(Arrays.asList(quotes).subList(0, 30));
+        QuoteBeanSorter.sort(list);
+        List<QuoteBean> expectedList = new ArrayList<>(Arrays.asList(quotes).subList(0, 30));
+        expectedList.sort(expected);
+        assertEquals(expectedList, list);
+
+        long[] values = {Long.MIN_VALUE, -1, 0, 1, Long.MAX_VALUE, 42, -42};
+        SequenceBean[] sequences = new SequenceBean[200];
+        for (int i = 0; i < sequences.length; i++) {
+            sequences[i] = new SequenceBean();
+            sequences[i].setSequence(i % 3 == 0 ? values[i % values.length] : random.nextLong());
+        }
+        SequenceBeanSorter.sort(sequences, 10, 190);
+        for (int i = 11; i < 190; i++)
+            assertTrue(sequences[i - 1].getSequence() >= sequences[i].getSequence());
+    }
+
+    private static InstrumentRef instrument(long id, String symbol, int sector, String venue) {
+        InstrumentRef instrument = new InstrumentRef(id);
+        instrument.setSymbol(symbol);
+        instrument.setSector(sector);
+        instrument.setVenue(venue);
+        return instrument;
+    }
+
+    @org.junit.Test
+    public void indexedRepository() {
+        for (boolean copyOnWrite : new boolean[]{false, true}) {
+            InstrumentRefRepository repository = copyOnWrite ? InstrumentRefRepository.copyOnWrite() : new InstrumentRefRepository();
+            List<InstrumentRef> instruments = new ArrayList<>();
+            for (int i = 0; i < 10000; i++)
+                instruments.add(instrument(i * 7919L - 5000, i % 3 == 0 ? null : "S" + i, i % 10, i % 2 == 0 ? "XNYS" : null));
+            repository.addAll(instruments);
+            assertEquals(10000, repository.size());
+            assertFalse(repository.add(instruments.get(5)));
+            for (int i = 0; i < 10000; i += 2) assertTrue(repository.remove(instruments.get(i)));
+            assertEquals(5000, repository.size());
+            for (int i = 0; i < 10000; i++) {
+                InstrumentRef instrument = instruments.get(i);
+                assertEquals(i % 2 == 0 ? null : instrument, repository.getById(instrument.getId()));
+                if (instrument.getSymbol() != null)
+                    assertEquals(i % 2 == 0 ? null : instrument, repository.getBySymbol(instrument.getSymbol()));
+            }
+            assertEquals(1000, repository.findBySector(3).size());
+            assertTrue(repository.findBySector(4).isEmpty());
+            assertTrue(repository.findByVenue("XNYS").isEmpty());
+
+            InstrumentRef moved = instruments.get(13);
+            List<InstrumentRef> sector3 = repository.findBySector(3);
+            moved.setSector(42);
+            moved.setSymbol("MOVED");
+            moved.setVenue("XLON");
+            assertEquals(Collections.singletonList(moved), repository.findBySector(42));
+            assertEquals(999, repository.findBySector(3).size());
+            if (copyOnWrite) assertEquals(1000, sector3.size());
+            assertEquals(moved, repository.getBySymbol("MOVED"));
+            assertNull(repository.getBySymbol("S13"));
+            assertEquals(Collections.singletonList(moved), repository.findByVenue("XLON"));
+
+            try {
+                instruments.get(11).setSymbol("MOVED");
+                fail("duplicate symbol");
+            } catch (IllegalArgumentException e) {
+                assertEquals("S11", instruments.get(11).getSymbol());
+            }
+            try {
+                repository.addAll(Arrays.asList(instrument(-1, "NEW", 1, null), instrument(1, "MOVED", 1, null)));
+                fail("duplicate symbol");
+            } catch (IllegalArgumentException e) {
+                assertEquals(5000, repository.size());
+                assertNull(repository.getById(-1));
+            }
+            InstrumentRefRepository other = new InstrumentRefRepository();
+            try {
+                other.add(moved);
+                fail("bean in other repository");
+            } catch (IllegalStateException ignored) {
+            }
+
+            int[] count = new int[1];
+            repository.forEach(instrument -> count[0]++);
+            assertEquals(5000, count[0]);
+            assertEquals(5000, repository.toList().size());
+            repository.clear();
+            assertEquals(0, repository.size());
+            assertTrue(other.add(moved));
+        }
+    }
+
+    @org.junit.Test
+    public void generatedValidator() {
+        SignupForm form = new SignupForm();
+        form.setLogin("user");
+        form.setEmail("User@Example.com");
+        form.setAge(30);
+        form.setDeposit(new java.math.BigDecimal("0.01"));
+        form.setTags(Collections.singletonList("new"));
+        form.setAccepted(true);
+        assertEquals(0L, SignupFormValidator.validate(form));
+        assertSame(form, SignupFormValidator.requireValid(form));
+
+        form.setLogin(" \t");
+        form.setEmail("user");
+        form.setAge(151);
+        form.setDeposit(java.math.BigDecimal.ZERO);
+        form.setTags(Collections.emptyList());
+        form.setAccepted(false);
+        form.setReferrer(-1L);
+        long violations = SignupFormValidator.validate(form);
+        assertEquals(SignupFormValidator.LOGIN_NOT_BLANK | SignupFormValidator.EMAIL_PATTERN |
+                SignupFormValidator.AGE_MAX | SignupFormValidator.DEPOSIT_DECIMAL_MIN | SignupFormValidator.TAGS_SIZE |
+                SignupFormValidator.ACCEPTED_ASSERT_TRUE | SignupFormValidator.REFERRER_POSITIVE_OR_ZERO, violations);
+        assertEquals("login", SignupFormValidator.propertyOf(violations));
+        assertEquals(Arrays.asList("login: must not be blank", "email: must match \"(?i)[a-z.]+@[a-z.]+\"",
+                "age: is not realistic", "deposit: must be greater than 0", "tags: size must be between 1 and 3",
+                "accepted: must be true", "referrer: must be greater than or equal to 0"),
+                SignupFormValidator.messages(violations));
+
+        form = new SignupForm();
+        form.setLogin("a-very-long-login-name");
+        form.setAge(17);
+        assertEquals(SignupFormValidator.LOGIN_SIZE | SignupFormValidator.EMAIL_NOT_NULL | SignupFormValidator.AGE_MIN |
+                SignupFormValidator.ACCEPTED_ASSERT_TRUE, SignupFormValidator.validate(form));
+        try {
+            SignupFormValidator.requireValid(form);
+            fail("invalid form");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("login: size must be between 0 and 16; email: must not be null"));
+        }
+    }
+
+    @org.junit.Test
+    public void csvParser() throws IOException {
+        TickRow row = TickRowCsv.parse("-9223372036854775808;\"AB;\"\"C\"\"\";1.25e2;;7;TRUE;SECONDS;x;0.10");
+        assertEquals(Long.MIN_VALUE, row.getSeq());
+        assertEquals("AB;\"C\"", row.getSymbol());
+        assertEquals(125.0, row.getPrice(), 0.0);
+        assertNull(row.getSize());
+        assertEquals(7, row.getVenue());
+        assertTrue(row.getBuy());
+        assertEquals(TimeUnit.SECONDS, row.getUnit());
+        assertEquals(Character.valueOf('x'), row.getFlag());
+        assertEquals(new java.math.BigDecimal("0.10"), row.getFee());
+
+        row = TickRowCsv.parse("1;;0.1;-2.5");
+        assertNull(row.getSymbol());
+        assertEquals(0.1, row.getPrice(), 0.0);
+        assertEquals(Float.valueOf(-2.5f), row.getSize());
+        for (String size : Arrays.asList("1.00000017881393432617187499", "16777217", "3.4028235e38", "1e-45", "0.3"))
+            assertEquals(Float.valueOf(size), TickRowCsv.parse("1;;0;" + size).getSize());
+        assertFalse(row.getBuy());
+        assertNull(row.getUnit());
+        try {
+            TickRowCsv.parse("1;A;0;0;2147483648");
+            fail("int overflow");
+        } catch (NumberFormatException e) {
+            assertEquals("invalid value \"2147483648\"", e.getMessage());
+        }
+
+        StringBuilder text = new StringBuilder("seq;symbol;price\r\n");
+        double sum = 0;
+        for (int i = 0; i < 50000; i++) {
+            text.append(i).append(";S").append(i % 10).append(';').append(i).append(".5\r\n");
+            sum += i + 0.5;
+        }
+        java.nio.CharBuffer chars = java.nio.CharBuffer.wrap(text);
+        assertEquals(50000, TickRowCsv.stream(chars, false).count());
+        assertEquals(sum, TickRowCsv.stream(chars, true).mapToDouble(TickRow::getPrice).sum(), 1e-6);
+        assertEquals(49999L * 50000 / 2, TickRowCsv.stream(chars, true).mapToLong(TickRow::getSeq).sum());
+
+        Path file = Files.createTempFile("ticks", ".csv");
+        try {
+            Files.write(file, text.append("50000;\u00e9t\u00e9;1\n").toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            List<TickRow> rows;
+            try (java.util.stream.Stream<TickRow> stream = TickRowCsv.stream(file, true)) {
+                rows = stream.collect(java.util.stream.Collectors.toList());
+            }
+            assertEquals(50001, rows.size());
+            assertEquals("S7", rows.get(49997).getSymbol());
+            assertEquals("\u00e9t\u00e9", rows.get(50000).getSymbol());
+            assertEquals(49999.5, rows.get(49999).getPrice(), 0.0);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @org.junit.Test
+    public void beanRegistry() {
+        DGenRegistry.Bean bean = DGenRegistry.get(PersonRow.class);
+        assertEquals("org.docero.dgen.tests.PersonRow", bean.getName());
+        assertEquals("org.docero.dgen.tests.DGen.PersonRow", bean.getPrototype());
+        assertFalse(bean.isInterface());
+        assertFalse(bean.isUnmodifiable());
+        assertTrue(bean.getClasses().contains("org.docero.dgen.tests.PersonRowJdbc"));
+        assertSame(bean, DGenRegistry.get("org.docero.dgen.tests.PersonRowJdbc"));
+        assertEquals(Arrays.asList("id", "firstName", "age", "score", "active", "unit", "balance", "cache"),
+                bean.getProperties().stream().map(DGenRegistry.Property::getName).collect(java.util.stream.Collectors.toList()));
+        assertTrue(bean.getProperty("id").isUnmodifiable());
+        assertEquals("java.util.concurrent.TimeUnit", bean.getProperty("unit").getType());
+        assertTrue(bean.getProperty("cache").isTransient());
+        assertFalse(bean.getProperty("age").isRequired());
+
+        assertTrue(DGenRegistry.get(TickRowCsv.class).getProperty("fee").getType().equals("java.math.BigDecimal"));
+        assertNull(DGenRegistry.get(Test.class));
+        assertTrue(DGenRegistry.beans().size() > 20);
+    }
 }